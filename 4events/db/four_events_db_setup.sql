@@ -1,5 +1,8 @@
 --
 -- PostgreSQL database setup script
+-- Creates the schema as it is after the latest migration in db/migrations, and records all the migrations in
+-- schema_version, so that MigrationRunner finds nothing to do. A new migration has to be applied here as well,
+-- together with its schema_version row: SetupScriptTest checks that the two do not drift apart.
 --
 END; -- Otherwise it's impossible to create a database in a sql script with autocommit enabled
 CREATE DATABASE four_events_db;
@@ -16,13 +19,14 @@ CREATE DATABASE four_events_db;
 
 BEGIN;
 CREATE TABLE public.default_event (
-    eventID character(36) NOT NULL,
-    creatorID character(36) NOT NULL,
+    eventID uuid NOT NULL,
+    creatorID uuid NOT NULL,
     eventType text NOT NULL,
     published boolean NOT NULL,
-    registeredUsers character(36)[], -- A event can have no registered users if created by a user which does not comply with event-specific constraints
     currentState text NOT NULL,
     participantsMax integer NOT NULL,
+    registeredCount integer NOT NULL DEFAULT 0, -- Rows in event_registration, kept by the same statements that add or remove them
+    version integer NOT NULL DEFAULT 0, -- Incremented on every change, for optimistic concurrency checks
     title text,
     participantsMin integer NOT NULL,
     participantsSurplus integer,
@@ -37,6 +41,7 @@ CREATE TABLE public.default_event (
     notes text,
     CONSTRAINT default_event_cost_check CHECK ((cost >= 0.0)),
     CONSTRAINT default_event_participants_num_check CHECK ((participantsMin > 0)),
+    CONSTRAINT default_event_registered_count_check CHECK ((registeredCount >= 0)),
     CONSTRAINT default_event_pkey PRIMARY KEY (eventID)
 );
 
@@ -58,15 +63,66 @@ INHERITS (public.default_event);
 CREATE TABLE public.mountain_hiking (
     length integer NOT NULL,
     heightDiff integer,
-    coachID character(36),
+    coachID uuid,
     coachAmount int,
-    lodgeID character(36),
+    lodgeID uuid,
     lodgeAmount int,
-    lunchID character(36),
+    lunchID uuid,
     lunchAmount int
 )
 INHERITS (public.default_event);
 
+--
+-- Name: soccer_game_sweep_idx, mountain_hiking_sweep_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Events whose state can still change with time, see Connector.updateEventStates. Indexes are not inherited, so one per category
+--
+
+CREATE INDEX soccer_game_sweep_idx ON public.soccer_game (currentState) WHERE currentState IN ('VALID', 'OPEN', 'CLOSED');
+CREATE INDEX mountain_hiking_sweep_idx ON public.mountain_hiking (currentState) WHERE currentState IN ('VALID', 'OPEN', 'CLOSED');
+
+--
+-- Name: <event table>_creator_idx, <event table>_published_state_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Events by creator and published events by state, on default_event and on every category table. See migration 2
+--
+
+CREATE INDEX default_event_creator_idx ON public.default_event (creatorID, eventType);
+CREATE INDEX default_event_published_state_idx ON public.default_event (currentState) WHERE published = true;
+CREATE INDEX soccer_game_creator_idx ON public.soccer_game (creatorID, eventType);
+CREATE INDEX soccer_game_published_state_idx ON public.soccer_game (currentState) WHERE published = true;
+CREATE INDEX mountain_hiking_creator_idx ON public.mountain_hiking (creatorID, eventType);
+CREATE INDEX mountain_hiking_published_state_idx ON public.mountain_hiking (currentState) WHERE published = true;
+
+--
+-- Name: <event table>_open_start_idx, <event table>_open_deadline_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Published OPEN events in every order EventSort offers, see Connector.findOpenEvents and migration 4
+--
+
+CREATE INDEX default_event_open_start_idx ON public.default_event (startDate, eventID) WHERE published = true AND currentState = 'OPEN';
+CREATE INDEX default_event_open_deadline_idx ON public.default_event (registrationDeadline, eventID) WHERE published = true AND currentState = 'OPEN';
+CREATE INDEX soccer_game_open_start_idx ON public.soccer_game (startDate, eventID) WHERE published = true AND currentState = 'OPEN';
+CREATE INDEX soccer_game_open_deadline_idx ON public.soccer_game (registrationDeadline, eventID) WHERE published = true AND currentState = 'OPEN';
+CREATE INDEX mountain_hiking_open_start_idx ON public.mountain_hiking (startDate, eventID) WHERE published = true AND currentState = 'OPEN';
+CREATE INDEX mountain_hiking_open_deadline_idx ON public.mountain_hiking (registrationDeadline, eventID) WHERE published = true AND currentState = 'OPEN';
+
+--
+-- Name: event_registration; Type: TABLE; Schema: public; Owner: postgres
+-- One row per user registered to an event. A event can have no registered users if created by a user which does not comply with event-specific constraints
+--
+
+CREATE TABLE public.event_registration (
+    eventID uuid NOT NULL,
+    userID uuid NOT NULL,
+    registered_at timestamp without time zone NOT NULL DEFAULT now(),
+    CONSTRAINT event_registration_pkey PRIMARY KEY (eventID, userID)
+);
+
+--
+-- Name: event_registration_user_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Serves the events a user registered to, see Connector.getEventsByRegistration
+--
+
+CREATE INDEX event_registration_user_idx ON public.event_registration (userID, eventID);
+
 --
 -- Name: categories; Type: TABLE; Schema: public; Owner: postgres
 --
@@ -83,33 +139,118 @@ CREATE TABLE public.categories (
 CREATE TABLE public.users (
 	username text NOT NULL,
     hashedPassword character(128) NOT NULL,
-    userID character(36) NOT NULL,
+    userID uuid NOT NULL,
     gender character(1) NOT NULL,
     age integer,
     favoriteCategories text[],
     CONSTRAINT users_pkey PRIMARY KEY (username)
 );
 
+--
+-- Name: users_userid_idx, users_favorite_categories_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Users by userID, and by favorite category with @> (see Connector.getUserIDsByFavoriteCategory)
+--
+
+CREATE INDEX users_userid_idx ON public.users (userID);
+CREATE INDEX users_favorite_categories_idx ON public.users USING gin (favoriteCategories);
+
 --
 -- Name: eventNotifications; Type: TABLE; Schema: public; Owner: postgres
 --
 
 CREATE TABLE public.eventNotifications (
-    notificationID character(36) NOT NULL,
-    eventID character(36) NOT NULL,
-    recipientID character(36) NOT NULL,
+    notificationID uuid NOT NULL,
+    eventID uuid NOT NULL,
+    recipientID uuid NOT NULL,
     read boolean NOT NULL,
     title varchar,
     content varchar,
+    created_at timestamp without time zone NOT NULL DEFAULT now(),
     CONSTRAINT eventNotifications_pkey PRIMARY KEY (notificationID)
 );
 
+--
+-- Name: eventNotifications_recipient_created_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Serves the inbox of a user newest first, see Connector.getNotificationsPage
+--
+
+CREATE INDEX eventNotifications_recipient_created_idx ON public.eventNotifications (recipientID, created_at DESC, notificationID DESC);
+
+--
+-- Name: eventNotifications_recipient_unread_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Unread notifications of a user, see Connector.getUnreadNotificationsCountByUser
+--
+
+CREATE INDEX eventNotifications_recipient_unread_idx ON public.eventNotifications (recipientID) WHERE read = false;
+
+--
+-- Name: notification_outbox; Type: TABLE; Schema: public; Owner: postgres
+-- Notification fan-outs still to be sent, written by the same statement as the state change they come from.
+-- Every change bumps the event version, so (eventID, version) identifies a fan-out. See Connector.claimOutboxJobs
+--
+
+CREATE TABLE public.notification_outbox (
+    eventID uuid NOT NULL,
+    version integer NOT NULL,
+    state varchar NOT NULL,
+    created_at timestamp without time zone NOT NULL DEFAULT now(),
+    claimed_until timestamp without time zone,
+    attempts integer NOT NULL DEFAULT 0,
+    recipients uuid[], -- Registered users at the state change, see NotificationDispatcher.relayBatch
+    CONSTRAINT notification_outbox_pkey PRIMARY KEY (eventID, version)
+);
+
+CREATE INDEX notification_outbox_created_idx ON public.notification_outbox (created_at);
+
+--
+-- Name: notification_outbox_dead; Type: TABLE; Schema: public; Owner: postgres
+-- Fan-outs that could not be sent within the allowed attempts, kept for inspection. See Connector.deadLetterOutboxJobs
+--
+
+CREATE TABLE public.notification_outbox_dead (
+    eventID uuid NOT NULL,
+    version integer NOT NULL,
+    state varchar NOT NULL,
+    created_at timestamp without time zone NOT NULL,
+    attempts integer NOT NULL,
+    dead_at timestamp without time zone NOT NULL DEFAULT now(),
+    recipients uuid[],
+    CONSTRAINT notification_outbox_dead_pkey PRIMARY KEY (eventID, version)
+);
+
 CREATE TABLE public.optionalCost (
-    costID character(36) NOT NULL,
-    eventID character(36) NOT NULL,
-    userID character(36) NOT NULL
+    costID uuid NOT NULL,
+    eventID uuid NOT NULL,
+    userID uuid NOT NULL
 );
 
+--
+-- Name: optionalCost_event_user_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Optional costs chosen for an event, by user. See Connector.getOptionalCosts and getOptionalCostsByEvent
+--
+
+CREATE INDEX optionalCost_event_user_idx ON public.optionalCost (eventID, userID);
+
+--
+-- Name: schema_version; Type: TABLE; Schema: public; Owner: postgres
+-- Migrations already reflected by this script, with the checksum MigrationRunner computes for their file
+--
+
+CREATE TABLE public.schema_version (
+    version integer NOT NULL,
+    description text NOT NULL,
+    checksum character(32) NOT NULL,
+    applied_at timestamp without time zone NOT NULL DEFAULT now(),
+    CONSTRAINT schema_version_pkey PRIMARY KEY (version)
+);
+
+INSERT INTO public.schema_version (version, description, checksum) VALUES (1, 'current_schema', 'd50097f98d025291ff30f1ac73fd7daf');
+INSERT INTO public.schema_version (version, description, checksum) VALUES (2, 'query_indexes', '9fd42ecfbf933ad3564e782955813a66');
+INSERT INTO public.schema_version (version, description, checksum) VALUES (3, 'uuid_columns', '8efdf34d8e18c59bfcaeff2480068b1f');
+INSERT INTO public.schema_version (version, description, checksum) VALUES (4, 'open_events_indexes', '109fd7e24a4dffc9b3d43cbf419343e5');
+INSERT INTO public.schema_version (version, description, checksum) VALUES (5, 'outbox_dead_letters', '72738421468853a821eacf1b017442dd');
+INSERT INTO public.schema_version (version, description, checksum) VALUES (6, 'outbox_recipients', '94045fe44021fe4c0f8ff3ddb22a2aa0');
+
 --
 -- Populating table with the only available category
 --
@@ -0,0 +1,81 @@
+--
+-- Migration 1: brings a database created with an older four_events_db_setup.sql up to date.
+-- Every statement is idempotent, so it is harmless on databases created with the current setup script.
+--
+
+--
+-- Name: eventNotifications; Type: TABLE; Schema: public; Owner: postgres
+-- Creation time of notifications, used to page the inbox. Already existing rows get the upgrade time.
+--
+
+ALTER TABLE public.eventNotifications ADD COLUMN IF NOT EXISTS created_at timestamp without time zone NOT NULL DEFAULT now();
+
+CREATE INDEX IF NOT EXISTS eventNotifications_recipient_created_idx ON public.eventNotifications (recipientID, created_at DESC, notificationID DESC);
+
+--
+-- Name: event_registration; Type: TABLE; Schema: public; Owner: postgres
+-- Registered users move from the default_event.registeredUsers array to their own table.
+-- Migrated rows keep the order they had in the array, one microsecond apart.
+--
+
+CREATE TABLE IF NOT EXISTS public.event_registration (
+    eventID character(36) NOT NULL,
+    userID character(36) NOT NULL,
+    registered_at timestamp without time zone NOT NULL DEFAULT now(),
+    CONSTRAINT event_registration_pkey PRIMARY KEY (eventID, userID)
+);
+
+CREATE INDEX IF NOT EXISTS event_registration_user_idx ON public.event_registration (userID, eventID);
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = 'public' AND table_name = 'default_event' AND column_name = 'registeredusers') THEN
+        INSERT INTO public.event_registration (eventID, userID, registered_at)
+            SELECT d.eventID, r.userID, now() + r.position * interval '1 microsecond'
+            FROM public.default_event d, unnest(d.registeredUsers) WITH ORDINALITY AS r(userID, position)
+            WHERE r.userID IS NOT NULL
+            ON CONFLICT DO NOTHING;
+        ALTER TABLE public.default_event DROP COLUMN registeredUsers; -- Also drops it from every category table
+    END IF;
+END
+$$;
+
+--
+-- Name: default_event; Type: TABLE; Schema: public; Owner: postgres
+-- Seat counter and row version for atomic registrations. The counter is recomputed from event_registration.
+--
+
+ALTER TABLE public.default_event ADD COLUMN IF NOT EXISTS registeredCount integer NOT NULL DEFAULT 0;
+ALTER TABLE public.default_event ADD COLUMN IF NOT EXISTS version integer NOT NULL DEFAULT 0;
+
+UPDATE public.default_event d SET registeredCount = (SELECT COUNT(*) FROM public.event_registration r WHERE r.eventID = d.eventID);
+
+ALTER TABLE public.default_event DROP CONSTRAINT IF EXISTS default_event_registered_count_check;
+ALTER TABLE public.default_event ADD CONSTRAINT default_event_registered_count_check CHECK ((registeredCount >= 0));
+
+--
+-- Name: soccer_game_sweep_idx, mountain_hiking_sweep_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Events whose state can still change with time, see Connector.updateEventStates. Indexes are not inherited, so one per category
+--
+
+CREATE INDEX IF NOT EXISTS soccer_game_sweep_idx ON public.soccer_game (currentState) WHERE currentState IN ('VALID', 'OPEN', 'CLOSED');
+CREATE INDEX IF NOT EXISTS mountain_hiking_sweep_idx ON public.mountain_hiking (currentState) WHERE currentState IN ('VALID', 'OPEN', 'CLOSED');
+
+--
+-- Name: notification_outbox; Type: TABLE; Schema: public; Owner: postgres
+-- Notification fan-outs still to be sent, written by the same statement as the state change they come from.
+-- Every change bumps the event version, so (eventID, version) identifies a fan-out. See Connector.claimOutboxJobs
+--
+
+CREATE TABLE IF NOT EXISTS public.notification_outbox (
+    eventID character(36) NOT NULL,
+    version integer NOT NULL,
+    state varchar NOT NULL,
+    created_at timestamp without time zone NOT NULL DEFAULT now(),
+    claimed_until timestamp without time zone,
+    attempts integer NOT NULL DEFAULT 0,
+    CONSTRAINT notification_outbox_pkey PRIMARY KEY (eventID, version)
+);
+
+CREATE INDEX IF NOT EXISTS notification_outbox_created_idx ON public.notification_outbox (created_at);
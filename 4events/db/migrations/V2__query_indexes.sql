@@ -0,0 +1,49 @@
+--
+-- Migration 2: indexes for the lookups made by Connector.
+--
+
+--
+-- Name: <event table>_creator_idx, <event table>_published_state_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Events by creator (getEventsByCreator, getUserIDByOldRegistrations) and published events by state
+-- (getActiveEvents, getOpenEvents). Indexes are not inherited, so they are created on default_event and on every
+-- category table that inherits from it. A category table added later needs them as well, in its own migration.
+-- eventType is constant within a category table, so it is only useful next to creatorID.
+--
+
+DO $$
+DECLARE
+    event_table name;
+BEGIN
+    FOR event_table IN
+        SELECT c.relname FROM pg_catalog.pg_class c
+        WHERE c.oid = 'public.default_event'::regclass
+           OR c.oid IN (SELECT i.inhrelid FROM pg_catalog.pg_inherits i WHERE i.inhparent = 'public.default_event'::regclass)
+    LOOP
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON public.%I (creatorID, eventType)', event_table || '_creator_idx', event_table);
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON public.%I (currentState) WHERE published = true', event_table || '_published_state_idx', event_table);
+    END LOOP;
+END
+$$;
+
+--
+-- Name: eventNotifications_recipient_unread_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Unread notifications of a user, see Connector.getUnreadNotificationsCountByUser. Read ones are left out of the index
+--
+
+CREATE INDEX IF NOT EXISTS eventNotifications_recipient_unread_idx ON public.eventNotifications (recipientID) WHERE read = false;
+
+--
+-- Name: users_userid_idx, users_favorite_categories_idx; Type: INDEX; Schema: public; Owner: postgres
+-- The primary key is username, while users are mostly looked up by userID. Favorite categories are searched
+-- with @> (see Connector.getUserIDsByFavoriteCategory), which a GIN index serves
+--
+
+CREATE INDEX IF NOT EXISTS users_userid_idx ON public.users (userID);
+CREATE INDEX IF NOT EXISTS users_favorite_categories_idx ON public.users USING gin (favoriteCategories);
+
+--
+-- Name: optionalCost_event_user_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Optional costs chosen by a user for an event, see Connector.getOptionalCosts
+--
+
+CREATE INDEX IF NOT EXISTS optionalCost_event_user_idx ON public.optionalCost (eventID, userID);
@@ -0,0 +1,25 @@
+--
+-- Migration 3: identifiers move from character(36) to the native uuid type, 16 bytes instead of 37.
+-- Columns of category tables inherited from default_event are converted together with it. Each table is
+-- rewritten once with all its identifiers, and indexes on them are rebuilt. Already converted columns are skipped.
+--
+
+DO $$
+DECLARE
+    id_columns record;
+BEGIN
+    FOR id_columns IN
+        SELECT c.relname, string_agg(format('ALTER COLUMN %I TYPE uuid USING CAST(%I AS uuid)', a.attname, a.attname), ', ') AS alterations
+        FROM pg_catalog.pg_attribute a
+        JOIN pg_catalog.pg_class c ON c.oid = a.attrelid
+        JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace
+        WHERE n.nspname = 'public' AND c.relkind = 'r' AND NOT a.attisdropped
+          AND a.attinhcount = 0 -- Inherited columns can only be altered on the parent table
+          AND a.atttypid = 'bpchar'::regtype
+          AND a.attname IN ('eventid', 'creatorid', 'userid', 'recipientid', 'notificationid', 'costid', 'coachid', 'lodgeid', 'lunchid')
+        GROUP BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE public.%I %s', id_columns.relname, id_columns.alterations);
+    END LOOP;
+END
+$$;
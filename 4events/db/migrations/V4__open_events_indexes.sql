@@ -0,0 +1,27 @@
+--
+-- Migration 4: indexes for the listing of open events, see Connector.findOpenEvents.
+--
+
+--
+-- Name: <event table>_open_start_idx, <event table>_open_deadline_idx; Type: INDEX; Schema: public; Owner: postgres
+-- Published OPEN events in every order EventSort offers, with eventID as tie breaker as in the keyset condition.
+-- A page is read from the cursor on and stops after LIMIT rows, merging the indexes of all category tables.
+-- As in migration 2, they are created on default_event and on every category table that inherits from it.
+--
+
+DO $$
+DECLARE
+    event_table name;
+BEGIN
+    FOR event_table IN
+        SELECT c.relname FROM pg_catalog.pg_class c
+        WHERE c.oid = 'public.default_event'::regclass
+           OR c.oid IN (SELECT i.inhrelid FROM pg_catalog.pg_inherits i WHERE i.inhparent = 'public.default_event'::regclass)
+    LOOP
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON public.%I (startDate, eventID) WHERE published = true AND currentState = ''OPEN''',
+                event_table || '_open_start_idx', event_table);
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON public.%I (registrationDeadline, eventID) WHERE published = true AND currentState = ''OPEN''',
+                event_table || '_open_deadline_idx', event_table);
+    END LOOP;
+END
+$$;
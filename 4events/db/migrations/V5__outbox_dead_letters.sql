@@ -0,0 +1,20 @@
+--
+-- Migration 5: outbox jobs that keep failing are moved aside instead of being retried forever.
+--
+
+--
+-- Name: notification_outbox_dead; Type: TABLE; Schema: public; Owner: postgres
+-- Fan-outs that could not be sent within the allowed attempts, with their outbox row as it was when they were given up.
+-- Nothing reads them back: they are kept for inspection, and can be moved back to notification_outbox by hand.
+-- See Connector.deadLetterOutboxJobs
+--
+
+CREATE TABLE IF NOT EXISTS public.notification_outbox_dead (
+    eventID uuid NOT NULL,
+    version integer NOT NULL,
+    state varchar NOT NULL,
+    created_at timestamp without time zone NOT NULL,
+    attempts integer NOT NULL,
+    dead_at timestamp without time zone NOT NULL DEFAULT now(),
+    CONSTRAINT notification_outbox_dead_pkey PRIMARY KEY (eventID, version)
+);
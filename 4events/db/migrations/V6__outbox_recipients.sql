@@ -0,0 +1,13 @@
+--
+-- Migration 6: outbox jobs remember who was registered to the event when it changed state.
+--
+
+--
+-- Name: notification_outbox.recipients, notification_outbox_dead.recipients; Type: COLUMN; Schema: public; Owner: postgres
+-- Registered users of the event at the state change, written by the same statement that queues the job,
+-- so that notifications reach the users registered at the transition even if registrations change before they are sent.
+-- Jobs queued before this migration have none: their recipients are read from the event. See NotificationDispatcher.relayBatch
+--
+
+ALTER TABLE public.notification_outbox ADD COLUMN IF NOT EXISTS recipients uuid[];
+ALTER TABLE public.notification_outbox_dead ADD COLUMN IF NOT EXISTS recipients uuid[];
@@ -0,0 +1,174 @@
+package it.unibs.ing.se.DMO;
+
+import it.unibs.ing.se.model.fields.OptionalCost;
+import it.unibs.ing.se.model.fields.Sex;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * How each Java type used in Event attributes is stored in the database.
+ * Most types use one column named as the attribute, OptionalCost uses two: NAMEID and NAMEAmount.
+ */
+enum ColumnType {
+    INTEGER(Integer.class) {
+        @Override
+        Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException {
+            return rs.getInt(columnIndexes[slot]); // NULL is read as 0, as it always has been
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+            if (value == null) statement.setNull(parameterIndex, Types.INTEGER);
+            else statement.setInt(parameterIndex, (Integer) value);
+        }
+    },
+    DOUBLE(Double.class) {
+        @Override
+        Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException {
+            return rs.getDouble(columnIndexes[slot]);
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+            if (value == null) statement.setNull(parameterIndex, Types.NUMERIC);
+            else statement.setDouble(parameterIndex, (Double) value);
+        }
+    },
+    STRING(String.class) {
+        @Override
+        Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException {
+            return rs.getString(columnIndexes[slot]);
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+            if (value == null) statement.setNull(parameterIndex, Types.VARCHAR);
+            else statement.setString(parameterIndex, (String) value);
+        }
+    },
+    LOCAL_DATE_TIME(LocalDateTime.class) {
+        @Override
+        Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException {
+            return rs.getObject(columnIndexes[slot], LocalDateTime.class);
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+            if (value == null) statement.setNull(parameterIndex, Types.TIMESTAMP);
+            else statement.setObject(parameterIndex, value); // Postgresql driver natively supports LocalDateTime
+        }
+    },
+    DURATION(Duration.class) {
+        @Override
+        Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException {
+            int seconds = rs.getInt(columnIndexes[slot]);
+            if (seconds == 0) {
+                return null; // Just for a matter of consistency
+            }
+            return Duration.of(seconds, ChronoUnit.SECONDS);
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+            if (value == null) statement.setNull(parameterIndex, Types.NUMERIC);
+            else statement.setLong(parameterIndex, ((Duration) value).getSeconds());
+        }
+    },
+    SEX(Sex.class) {
+        @Override
+        Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException {
+            return new Sex(rs.getString(columnIndexes[slot]));
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+            if (value == null) statement.setNull(parameterIndex, Types.CHAR);
+            else statement.setString(parameterIndex, value.toString());
+        }
+    },
+    OPTIONAL_COST(OptionalCost.class, "ID", "Amount") {
+        @Override
+        Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException {
+            UUID costID = rs.getObject(columnIndexes[slot], UUID.class);
+            if (costID == null) {
+                return null; // Just for a matter of consistency
+            }
+            Integer costAmount = rs.getInt(columnIndexes[slot + 1]);
+            return new OptionalCost(costID, costAmount);
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+            if (value == null) {
+                statement.setNull(parameterIndex, Types.OTHER); // uuid
+                statement.setNull(parameterIndex + 1, Types.INTEGER);
+            } else {
+                statement.setObject(parameterIndex, ((OptionalCost) value).getCostID()); // OptionalCost ID
+                statement.setInt(parameterIndex + 1, ((OptionalCost) value).getCostAmount()); // OptionalCost Amount
+            }
+        }
+    };
+
+    private final Class<?> javaType;
+    private final String[] columnSuffixes;
+
+    ColumnType(Class<?> javaType, String... columnSuffixes) {
+        this.javaType = javaType;
+        this.columnSuffixes = columnSuffixes.length == 0 ? new String[] {""} : columnSuffixes;
+    }
+
+    /**
+     * Reads a value from the current row of a ResultSet
+     * @param rs A ResultSet already positioned on the row to read
+     * @param columnIndexes Indexes of the columns in rs, as resolved by EventRowMapper
+     * @param slot Position in columnIndexes of the first column of this value
+     * @return The value, null if the cell is NULL (but Integer and Double, read as 0)
+     * @throws SQLException If a database access error occurs
+     */
+    abstract Object read(ResultSet rs, int[] columnIndexes, int slot) throws SQLException;
+
+    /**
+     * Sets the parameters of a statement to a value, binding NULL explicitly when it is missing
+     * @param statement PreparedStatement to fill
+     * @param parameterIndex Index of the first parameter of this value, width() parameters are set
+     * @param value The value to bind, can be null
+     * @throws SQLException If a database access error occurs
+     */
+    abstract void bind(PreparedStatement statement, int parameterIndex, Object value) throws SQLException;
+
+    /**
+     * @return Number of columns used by a value of this type
+     */
+    int width() { return columnSuffixes.length; }
+
+    /**
+     * @param attributeName Name of an Event attribute of this type
+     * @return The names of the columns holding it, i.e. {"coachID", "coachAmount"} for the "coach" OptionalCost
+     */
+    String[] columnNames(String attributeName) {
+        String[] columnNames = new String[columnSuffixes.length];
+        for (int i = 0; i < columnSuffixes.length; i++)
+            columnNames[i] = attributeName + columnSuffixes[i];
+        return columnNames;
+    }
+
+    /**
+     * @param javaType Type of an Event attribute
+     * @return The matching ColumnType
+     * @throws IllegalArgumentException If the type can't be stored in the database
+     */
+    static ColumnType of(Class<?> javaType) throws IllegalArgumentException {
+        for (ColumnType columnType : values()) {
+            if (columnType.javaType.equals(javaType))
+                return columnType;
+        }
+        throw new IllegalArgumentException("ALERT: Unexpected input type: " + javaType);
+    }
+}
@@ -0,0 +1,246 @@
+package it.unibs.ing.se.DMO;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of database connections used by Connector.
+ * At most maxSize connections can be borrowed at the same time, while at least minSize are kept open.
+ * Idle connections are evicted after idleTimeoutMillis and validated before being handed out again.
+ */
+public class ConnectionPool {
+    private final static int VALIDATION_TIMEOUT_SECONDS = 2;
+    private final static long VALIDATION_BYPASS_MILLIS = 1000; // Connections used less than a second ago are not validated again
+    private final static long EVICTION_INTERVAL_MILLIS = 30000;
+
+    private final String dbURL;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>(); // Most recently used first
+    private final Semaphore borrowPermits;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicInteger borrowedCount = new AtomicInteger();
+    private final AtomicLong borrowTotal = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong createdTotal = new AtomicLong();
+    private final AtomicLong evictedTotal = new AtomicLong();
+    private final AtomicLong invalidTotal = new AtomicLong();
+
+    /**
+     * Creates the pool and opens minSize connections right away, so that a wrong configuration is detected at startup
+     * @param dbURL Url to target DB - should start with "jdbc:postgresql://"
+     * @param username String with database username
+     * @param password String with database password
+     * @param minSize Number of connections that are always kept open
+     * @param maxSize Maximum number of connections that can be borrowed at the same time
+     * @param idleTimeoutMillis Time after which an idle connection above minSize gets closed
+     * @param borrowTimeoutMillis Maximum time borrow waits for a free connection
+     * @throws IllegalArgumentException If sizes are not consistent
+     * @throws SQLException Directly from SQL driver if something else bad happens
+     */
+    ConnectionPool(String dbURL, String username, String password, int minSize, int maxSize,
+                   long idleTimeoutMillis, long borrowTimeoutMillis) throws IllegalArgumentException, SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException("ALERT: Illegal pool size min " + minSize + " max " + maxSize);
+        this.dbURL = dbURL;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.borrowPermits = new Semaphore(maxSize, true); // Fair, so that no session starves under load
+
+        try {
+            for (int i = 0; i < minSize; i++)
+                idleConnections.offerLast(open());
+        } catch (SQLException e) {
+            closeIdleConnections();
+            throw e;
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "4events-pool-evictor");
+            thread.setDaemon(true); // Must not keep the JVM alive
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, EVICTION_INTERVAL_MILLIS, EVICTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool. It MUST be given back by closing it, ideally with a try-with-resources.
+     * @return A valid PooledConnection
+     * @throws IllegalStateException If the pool has been closed
+     * @throws SQLTimeoutException If no connection got free within the borrow timeout
+     * @throws SQLException Directly from SQL driver if a new connection can't be opened
+     */
+    PooledConnection borrow() throws IllegalStateException, SQLTimeoutException, SQLException {
+        if (closed) throw new IllegalStateException("ALERT: No connection to the database");
+
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = borrowPermits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("ALERT: Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - waitStart;
+        borrowWaitNanos.addAndGet(waited);
+        maxBorrowWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!acquired) {
+            borrowTimeouts.incrementAndGet();
+            throw new SQLTimeoutException("ALERT: No database connection available after " + borrowTimeoutMillis + " ms");
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                if (connection.idleMillis() < VALIDATION_BYPASS_MILLIS || connection.isValid(VALIDATION_TIMEOUT_SECONDS))
+                    break;
+                invalidTotal.incrementAndGet();
+                destroy(connection);
+            }
+            if (connection == null)
+                connection = open();
+            connection.lease();
+            borrowedCount.incrementAndGet();
+            borrowTotal.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            borrowPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool. Called by PooledConnection.close()
+     * @param connection The connection previously returned by borrow
+     */
+    void release(PooledConnection connection) {
+        borrowedCount.decrementAndGet();
+        try {
+            if (closed || !connection.reset()) {
+                destroy(connection);
+            } else {
+                idleConnections.offerFirst(connection);
+                if (closed && idleConnections.remove(connection)) // close() could have run in the meantime
+                    destroy(connection);
+            }
+        } finally {
+            borrowPermits.release();
+        }
+    }
+
+    /**
+     * Closes all idle connections and refuses any further borrow. Borrowed connections are closed when given back.
+     */
+    void close() {
+        closed = true;
+        evictor.shutdownNow();
+        closeIdleConnections();
+    }
+
+    public int getMinSize() { return minSize; }
+
+    public int getMaxSize() { return maxSize; }
+
+    public int getOpenCount() { return openCount.get(); }
+
+    public int getIdleCount() { return idleConnections.size(); }
+
+    public int getBorrowedCount() { return borrowedCount.get(); }
+
+    public long getBorrowCount() { return borrowTotal.get(); }
+
+    public long getBorrowTimeoutCount() { return borrowTimeouts.get(); }
+
+    public double getAverageBorrowWaitMillis() {
+        long borrowAttempts = borrowTotal.get() + borrowTimeouts.get();
+        return borrowAttempts == 0 ? 0 : borrowWaitNanos.get() / 1e6 / borrowAttempts;
+    }
+
+    public double getMaxBorrowWaitMillis() { return maxBorrowWaitNanos.get() / 1e6; }
+
+    public long getCreatedCount() { return createdTotal.get(); }
+
+    public long getEvictedCount() { return evictedTotal.get(); }
+
+    public long getInvalidCount() { return invalidTotal.get(); }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "open=" + getOpenCount() +
+                ", idle=" + getIdleCount() +
+                ", borrowed=" + getBorrowedCount() +
+                ", min=" + minSize +
+                ", max=" + maxSize +
+                ", borrows=" + getBorrowCount() +
+                ", borrowTimeouts=" + getBorrowTimeoutCount() +
+                String.format(", avgWait=%.3fms, maxWait=%.3fms", getAverageBorrowWaitMillis(), getMaxBorrowWaitMillis()) +
+                ", created=" + getCreatedCount() +
+                ", evicted=" + getEvictedCount() +
+                ", invalid=" + getInvalidCount() +
+                '}';
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection connection = new PooledConnection(this, DriverManager.getConnection(dbURL, username, password));
+        openCount.incrementAndGet();
+        createdTotal.incrementAndGet();
+        return connection;
+    }
+
+    private void destroy(PooledConnection connection) {
+        openCount.decrementAndGet();
+        connection.closePhysical();
+    }
+
+    private void closeIdleConnections() {
+        PooledConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null)
+            destroy(connection);
+    }
+
+    /**
+     * Closes connections idle for more than idleTimeoutMillis, then opens new ones if we fell below minSize
+     */
+    private void evictIdleConnections() {
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator(); // Least recently used first
+        while (iterator.hasNext() && openCount.get() > minSize) {
+            PooledConnection connection = iterator.next();
+            if (connection.idleMillis() > idleTimeoutMillis && idleConnections.remove(connection)) {
+                evictedTotal.incrementAndGet();
+                destroy(connection);
+            }
+        }
+
+        try {
+            while (!closed && openCount.get() < minSize)
+                idleConnections.offerLast(open());
+        } catch (SQLException e) {
+            System.out.println("ALERT: Error opening database connection!");
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,66 +1,189 @@
 package it.unibs.ing.se.DMO;
 
+import it.unibs.ing.se.model.AttributeTable;
 import it.unibs.ing.se.model.EventFactory;
 import it.unibs.ing.se.model.fields.OptionalCost;
 import it.unibs.ing.se.model.fields.Sex;
 import it.unibs.ing.se.model.Event;
+import it.unibs.ing.se.model.EventSummary;
 import it.unibs.ing.se.model.Notification;
 import it.unibs.ing.se.model.User;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.*;
-import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Singleton class used to connect to the database and save/fetch data from it.
+ * It is safe to use from multiple threads: every method borrows its own connection from a ConnectionPool
+ * and gives it back before returning.
  */
 public class Connector {
+    // Users registered to the event of table alias %s, as an array in registration order. Read by EventRowMapper
+    private final static String REGISTERED_USERS_COLUMN = "ARRAY(SELECT r.userID FROM public.event_registration r WHERE r.eventID = %s.eventID ORDER BY r.registered_at, r.userID) AS registeredUsers";
     private final static String LOGIN = "SELECT userID FROM public.users WHERE username = ? AND hashedPassword = ?";
     private final static String GET_USER = "SELECT * FROM public.users WHERE userID = ?";
     private final static String INSERT_USER = "INSERT INTO public.users values (?, ?, ?, ?, ?, ?)";
     private final static String UPDATE_USER = "UPDATE public.users SET age = ?, favoriteCategories = ? WHERE userID = ?";
-    private final static String GET_USERS_BY_FAVORITE = "SELECT userID FROM public.users WHERE ? = ANY (public.users.favoriteCategories)";
-    private final static String GET_USERS_BY_PREVIOUS_REGISTRATION = "SELECT registeredUsers FROM public.default_event WHERE creatorID = ? AND eventType = ?";
+    private final static String GET_USERS_BY_FAVORITE = "SELECT userID FROM public.users WHERE favoriteCategories @> ARRAY[CAST(? AS text)]"; // Unlike = ANY, can use a GIN index
+    private final static String GET_USERS_BY_PREVIOUS_REGISTRATION = "SELECT DISTINCT r.userID FROM public.event_registration r JOIN public.default_event d ON d.eventID = r.eventID " +
+            "WHERE d.creatorID = ? AND d.eventType = ? AND r.userID <> d.creatorID";
     private final static String GET_USERNAME = "SELECT username FROM public.users WHERE userID = ?";
+    private final static String GET_USERNAMES = "SELECT userID, username FROM public.users WHERE userID = ANY (CAST(? AS uuid[]))";
     private final static String GET_CATEGORIES_LIST = "select * from public.categories";
-    private final static String GET_EVENT_TYPE = "SELECT eventType FROM public.default_event WHERE eventID = ?";
     private final static String GET_ACTIVE_EVENTS_LIST = "SELECT eventID FROM public.default_event WHERE published = true AND currentstate <> 'ENDED' AND currentstate <> 'FAILED'";
     private final static String GET_OPEN_EVENTS_LIST = "SELECT eventID FROM public.default_event WHERE published = true AND currentstate = 'OPEN'";
+    // The date computed as in Event.getNextStateChangeDate, without reading whole events. VALID events have none.
+    // The state condition is covered by the sweep partial indexes, see SWEEP_EVENT_STATES
+    private final static String GET_NEXT_STATE_CHANGE_DATES = "SELECT eventID, CASE currentState WHEN 'OPEN' THEN registrationDeadline " +
+            "ELSE COALESCE(endDate, startDate + NULLIF(duration, 0) * interval '1 second', startDate + interval '1 day') END " +
+            "FROM public.default_event WHERE currentState IN ('OPEN', 'CLOSED')";
+    // Completed by findOpenEvents with the filter conditions, the cursor and the order. %s is the sort column
+    // A single text per sort and direction: filters and cursor are switched off by passing null, see findOpenEvents.
+    // %1$s is the sort column, %2$s the cursor comparison, %3$s the order direction
+    private final static String FIND_OPEN_EVENTS = "SELECT eventID, %1$s FROM public.default_event WHERE published = true AND currentState = 'OPEN' " +
+            "AND (CAST(? AS text) IS NULL OR eventType = ?) " +
+            "AND (CAST(? AS timestamp) IS NULL OR startDate >= ?) " +
+            "AND (CAST(? AS timestamp) IS NULL OR startDate <= ?) " +
+            "AND (CAST(? AS text) IS NULL OR location ILIKE ?) " +
+            "AND (CAST(? AS numeric) IS NULL OR cost <= ?) " +
+            "AND (CAST(? AS integer) IS NULL OR participantsMax - registeredCount >= ?) " +
+            "AND (CAST(? AS uuid) IS NULL OR (%1$s, eventID) %2$s (CAST(? AS timestamp), CAST(? AS uuid))) " +
+            "ORDER BY %1$s %3$s, eventID %3$s LIMIT ?";
     private final static String GET_EVENTS_LIST_BY_CREATORID = "SELECT eventID FROM public.default_event WHERE creatorID = ?";
-    private final static String GET_EVENTS_LIST_BY_REGISTERED = "SELECT eventID FROM public.default_event WHERE ? = ANY (public.default_event.registeredUsers)";
-    private final static String GET_EVENT = "SELECT * FROM public.%s WHERE eventID = ?"; // HACK explained in function body
-    private final static String UPDATE_EVENT_STATE = "UPDATE public.default_event SET currentstate = ? WHERE eventID = ?";
-    private final static String UPDATE_EVENT_PUBLISHED = "UPDATE public.default_event SET published = ? WHERE eventID = ?";
-    private final static String UPDATE_EVENT_REGISTERED = "UPDATE public.default_event SET registeredUsers = ? WHERE eventID = ?";
+    private final static String GET_EVENTS_LIST_BY_REGISTERED = "SELECT eventID FROM public.event_registration WHERE userID = ?";
+    private final static String GET_EVENT = "SELECT e.*, " + String.format(REGISTERED_USERS_COLUMN, "e") + " FROM public.%s e WHERE e.eventID = ?"; // HACK explained in function body
+    private final static String GET_EVENT_WITH_TYPE = "SELECT c.relname AS eventTable, d.*, " + String.format(REGISTERED_USERS_COLUMN, "d") + "%s FROM public.default_event d JOIN pg_catalog.pg_class c ON c.oid = d.tableoid%s WHERE d.eventID = ?"; // Filled by getEventWithTypeQuery
+    private final static String GET_EVENT_TYPES = "SELECT eventID, eventType FROM public.default_event WHERE eventID = ANY (CAST(? AS uuid[]))";
+    private final static String GET_EVENTS = "SELECT e.*, " + String.format(REGISTERED_USERS_COLUMN, "e") + ", u.username AS creatorUsername FROM public.%s e LEFT JOIN public.users u ON u.userID = e.creatorID WHERE e.eventID = ANY (CAST(? AS uuid[]))";
+    // Only the columns listings show, from default_event alone whatever the category. See getEventSummaries
+    private final static String GET_EVENT_SUMMARIES = "SELECT d.eventID, d.eventType, d.title, d.creatorID, u.username AS creatorUsername, d.currentState, " +
+            "d.registrationDeadline, d.startDate, d.registeredCount FROM public.default_event d LEFT JOIN public.users u ON u.userID = d.creatorID " +
+            "WHERE d.eventID = ANY (CAST(? AS uuid[]))";
+    private final static String UPDATE_EVENT_STATE = "UPDATE public.default_event SET currentstate = ?, version = version + 1 WHERE eventID = ?";
+    // The fan-out of the new state, if requested by the last parameter, is queued in the outbox by the same statement
+    private final static String UPDATE_EVENT_STATE_VERSIONED = "WITH updated AS (" +
+            "UPDATE public.default_event SET currentstate = ?, version = version + 1 WHERE eventID = ? AND version = ? RETURNING eventID, version, currentState), " +
+            "job AS (INSERT INTO public.notification_outbox (eventID, version, state, recipients) " +
+            "SELECT eventID, version, currentState, " + String.format(REGISTERED_USERS_COLUMN, "updated") + " FROM updated WHERE ?) " +
+            "SELECT version FROM updated";
+    private final static String UPDATE_EVENT_PUBLISHED = "UPDATE public.default_event SET published = ?, version = version + 1 WHERE eventID = ?";
+    // Time-driven state transitions, as in Event.updateState, for all events at once. Run in this order every event moves
+    // at most one step per sweep. The only parameter is the current time. Transitions users are notified about queue their
+    // fan-out in the outbox within the same statement, CLOSED -> OPEN and -> ENDED need none
+    private final static String[] SWEEP_EVENT_STATES = {
+            "UPDATE public.default_event d SET currentState = 'OPEN', version = d.version + 1 FROM (SELECT CAST(? AS timestamp) AS now) p " +
+                    "WHERE d.currentState = 'CLOSED' AND d.registeredCount < d.participantsMax AND d.registrationDeadline >= p.now RETURNING d.eventID, 'CLOSED'",
+            "UPDATE public.default_event d SET currentState = 'ENDED', version = d.version + 1 FROM (SELECT CAST(? AS timestamp) AS now) p " +
+                    "WHERE d.currentState = 'CLOSED' AND COALESCE(d.endDate, d.startDate + NULLIF(d.duration, 0) * interval '1 second', d.startDate + interval '1 day') < p.now RETURNING d.eventID, 'CLOSED'",
+            "WITH moved AS (UPDATE public.default_event d SET currentState = CASE WHEN d.registrationDeadline < p.now AND d.registeredCount < d.participantsMin THEN 'FAILED' ELSE 'CLOSED' END, version = d.version + 1 FROM (SELECT CAST(? AS timestamp) AS now) p " +
+                    "WHERE d.currentState = 'OPEN' AND (d.registrationDeadline < p.now OR d.registeredCount >= d.participantsMax) RETURNING d.eventID, d.version, d.currentState), " +
+                    "jobs AS (INSERT INTO public.notification_outbox (eventID, version, state, recipients) SELECT eventID, version, currentState, " + String.format(REGISTERED_USERS_COLUMN, "moved") + " FROM moved) SELECT eventID, 'OPEN' FROM moved",
+            "WITH moved AS (UPDATE public.default_event d SET currentState = 'OPEN', version = d.version + 1 FROM (SELECT CAST(? AS timestamp) AS now) p " +
+                    "WHERE d.currentState = 'VALID' AND d.published = true AND d.registrationDeadline >= p.now RETURNING d.eventID, d.version, d.currentState), " +
+                    "jobs AS (INSERT INTO public.notification_outbox (eventID, version, state, recipients) SELECT eventID, version, currentState, " + String.format(REGISTERED_USERS_COLUMN, "moved") + " FROM moved) SELECT eventID, 'VALID' FROM moved"
+    };
+    private final static String INSERT_REGISTRATION = "INSERT INTO public.event_registration (eventID, userID) VALUES (?, ?)";
+    // Takes a seat only if the event accepts registrations and is not full, then adds the registration and the chosen optional costs.
+    // Concurrent registrations to the same event queue on its row lock and recheck the seat count once they get it.
+    // Duplicated registrations violate event_registration primary key (SQLState 23505) and roll back the whole statement.
+    private final static String REGISTER_USER = "WITH seat AS (" +
+            "UPDATE public.default_event SET registeredCount = registeredCount + 1, version = version + 1 " +
+            "WHERE eventID = ? AND currentState IN ('VALID', 'OPEN') AND registeredCount < participantsMax RETURNING eventID, version), " +
+            "registration AS (INSERT INTO public.event_registration (eventID, userID) SELECT eventID, ? FROM seat), " +
+            "costs AS (INSERT INTO public.optionalCost (costID, eventID, userID) SELECT c.costID, seat.eventID, ? FROM seat, unnest(CAST(? AS uuid[])) AS c(costID)) " +
+            "SELECT version FROM seat";
+    private final static String DEREGISTER_USER = "WITH removed AS (DELETE FROM public.event_registration WHERE eventID = ? AND userID = ? RETURNING eventID) " +
+            "UPDATE public.default_event d SET registeredCount = d.registeredCount - 1, version = d.version + 1 FROM removed WHERE d.eventID = removed.eventID";
     private final static String INSERT_OPTIONAL_COST = "INSERT INTO public.optionalCost values (?, ?, ?)";
     private final static String GET_OPTIONAL_COSTS = "SELECT costID FROM public.optionalCost WHERE eventID = ? AND userID = ?";
+    private final static String GET_OPTIONAL_COSTS_BY_EVENT = "SELECT userID, costID FROM public.optionalCost WHERE eventID = ?";
     private final static String GET_NOTIFICATIONS_BY_USER = "SELECT notificationID FROM public.eventNotifications WHERE recipientID = ?";
-    private final static String GET_UNREAD_NOTIFICATIONS_BY_USER = "SELECT * FROM public.eventNotifications WHERE recipientID = ? AND read = false";
+    private final static String GET_UNREAD_NOTIFICATIONS_COUNT_BY_USER = "SELECT COUNT(*) FROM public.eventNotifications WHERE recipientID = ? AND read = false";
     private final static String GET_NOTIFICATION = "SELECT * FROM public.eventNotifications WHERE notificationID = ?";
-    private final static String UPDATE_NOTIFICATION_READ = "UPDATE public.eventNotifications SET read = ? WHERE notificationID = ?";
-    private final static String INSERT_NOTIFICATION = "INSERT INTO public.eventnotifications values (?, ?, ?, ?, ?, ?)";
-
-    private Connection dbConnection;
-
-    private static Connector singleInstance;
+    private final static String GET_NOTIFICATIONS_FIRST_PAGE = "SELECT * FROM public.eventNotifications WHERE recipientID = ? " +
+            "ORDER BY created_at DESC, notificationID DESC LIMIT ?";
+    private final static String GET_NOTIFICATIONS_NEXT_PAGE = "SELECT * FROM public.eventNotifications WHERE recipientID = ? AND (created_at, notificationID) < (?, ?) " +
+            "ORDER BY created_at DESC, notificationID DESC LIMIT ?";
+    private final static String UPDATE_NOTIFICATION_READ = "WITH old AS (SELECT notificationID, recipientID, read FROM public.eventNotifications WHERE notificationID = ? FOR UPDATE) " +
+            "UPDATE public.eventNotifications n SET read = ? FROM old WHERE n.notificationID = old.notificationID RETURNING old.recipientID, old.read";
+    private final static String UPDATE_NOTIFICATIONS_READ = "WITH old AS (SELECT notificationID, recipientID FROM public.eventNotifications WHERE notificationID = ANY (CAST(? AS uuid[])) AND read <> ? FOR UPDATE) " +
+            "UPDATE public.eventNotifications n SET read = ? FROM old WHERE n.notificationID = old.notificationID RETURNING old.recipientID";
+    private final static String UPDATE_ALL_NOTIFICATIONS_READ = "UPDATE public.eventNotifications SET read = true WHERE recipientID = ? AND read = false";
+    private final static String INSERT_NOTIFICATION = "INSERT INTO public.eventnotifications (notificationID, eventID, recipientID, read, title, content) values (?, ?, ?, ?, ?, ?)";
+    // Notifications sent from the outbox may have been inserted already by a relay that failed before deleting its jobs
+    private final static String INSERT_NOTIFICATION_IF_ABSENT = INSERT_NOTIFICATION + " ON CONFLICT (notificationID) DO NOTHING";
+    // COPY can't skip duplicates, so big fan-outs are copied to a temporary table first and moved with INSERT_COPIED_NOTIFICATIONS
+    private final static String CREATE_NOTIFICATIONS_COPY_TABLE = "CREATE TEMPORARY TABLE IF NOT EXISTS eventNotifications_copy " +
+            "(notificationID uuid, eventID uuid, recipientID uuid, read boolean, title varchar, content varchar) ON COMMIT DELETE ROWS";
+    private final static String COPY_NOTIFICATIONS = "COPY eventNotifications_copy (notificationID, eventID, recipientID, read, title, content) FROM STDIN WITH (FORMAT csv)";
+    private final static String INSERT_COPIED_NOTIFICATIONS = "INSERT INTO public.eventNotifications (notificationID, eventID, recipientID, read, title, content) " +
+            "SELECT notificationID, eventID, recipientID, read, title, content FROM eventNotifications_copy ON CONFLICT (notificationID) DO NOTHING";
+    // Claims the oldest jobs nobody is working on for a while (lease), other relays skip them until it expires.
+    // Parameters are the lease in milliseconds, the maximum number of attempts and the maximum number of jobs
+    private final static String CLAIM_OUTBOX_JOBS = "UPDATE public.notification_outbox o SET claimed_until = now() + ? * interval '1 millisecond', attempts = o.attempts + 1 " +
+            "FROM (SELECT eventID, version FROM public.notification_outbox WHERE (claimed_until IS NULL OR claimed_until < now()) AND attempts < ? " +
+            "ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED) c " +
+            "WHERE o.eventID = c.eventID AND o.version = c.version RETURNING o.eventID, o.version, o.state, o.recipients";
+    private final static String DELETE_OUTBOX_JOBS = "DELETE FROM public.notification_outbox o USING unnest(CAST(? AS uuid[]), CAST(? AS integer[])) AS j(eventID, version) " +
+            "WHERE o.eventID = j.eventID AND o.version = j.version";
+    // Jobs out of attempts whose last lease has expired, so that no relay is still working on them
+    private final static String DEAD_LETTER_OUTBOX_JOBS = "WITH dead AS (DELETE FROM public.notification_outbox WHERE attempts >= ? AND claimed_until < now() " +
+            "RETURNING eventID, version, state, created_at, attempts, recipients) " +
+            "INSERT INTO public.notification_outbox_dead (eventID, version, state, created_at, attempts, recipients) " +
+            "SELECT eventID, version, state, created_at, attempts, recipients FROM dead ON CONFLICT (eventID, version) DO NOTHING";
+    private final static String COUNT_OUTBOX_JOBS = "SELECT COUNT(*) FROM public.notification_outbox";
+
+    public final static int DEFAULT_POOL_MIN_SIZE = 1; // Used when the configuration does not say otherwise, see Main
+    public final static int DEFAULT_POOL_MAX_SIZE = 8;
+    private final static long POOL_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private final static long POOL_BORROW_TIMEOUT_MILLIS = 10 * 1000;
+    private final static int EVENT_TYPE_CACHE_SIZE = 10000;
+    private final static int USERNAME_CACHE_SIZE = 10000;
+    private final static int UNREAD_COUNTERS_SIZE = 10000;
+    private final static int EVENT_CACHE_SIZE = 1000;
+    private final static long EVENT_CACHE_TTL_MILLIS = 30 * 1000; // Bounds how stale events changed by other instances can be
+    private final static int NOTIFICATIONS_BATCH_SIZE = 500; // Rows sent to the server in a single JDBC batch
+    private final static int EVENTS_BATCH_SIZE = 500;
+    private final static String UNIQUE_VIOLATION = "23505"; // SQLState raised by PostgreSQL on duplicated primary keys
+    private final static int NOTIFICATIONS_COPY_THRESHOLD = 2000; // From here on COPY is faster than batched INSERTs
+
+    private volatile ConnectionPool connectionPool;
+    private final LruCache<UUID, String> eventTypeCache = new LruCache<>(EVENT_TYPE_CACHE_SIZE); // An event never changes its type
+    private final LruCache<UUID, String> usernameCache = new LruCache<>(USERNAME_CACHE_SIZE); // Usernames can't be changed either
+    private final UnreadNotificationCounters unreadCounters = new UnreadNotificationCounters(UNREAD_COUNTERS_SIZE);
+    private final EventCache eventCache = new EventCache(EVENT_CACHE_SIZE, EVENT_CACHE_TTL_MILLIS); // Invalidated by every event write
+    private volatile String eventWithTypeQuery; // Built on first use, see getEventWithTypeQuery
+
+    private static volatile Connector singleInstance;
+    private static volatile CompletableFuture<Connector> pendingInstance; // Set while getInstanceAsync is connecting
 
     /**
      *
      * @param dbURL Url to target DB - should start with "jdbc:postgresql://"
      * @param username String with database username
      * @param password String with database password
+     * @param poolMinSize Number of database connections that are always kept open
+     * @param poolMaxSize Maximum number of database connections used at the same time
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
-    private Connector(String dbURL, String username, String password) throws SQLException {
+    private Connector(String dbURL, String username, String password, int poolMinSize, int poolMaxSize) throws SQLException {
         try {
             Class.forName("org.postgresql.Driver"); // Ensures correct driver is loaded
         } catch (java.lang.ClassNotFoundException e) {
             System.out.println("ALERT: Error selecting postgresql driver!");
             e.printStackTrace();
         }
-        dbConnection = DriverManager.getConnection(dbURL, username, password);
+        connectionPool = new ConnectionPool(dbURL, username, password, poolMinSize, poolMaxSize,
+                POOL_IDLE_TIMEOUT_MILLIS, POOL_BORROW_TIMEOUT_MILLIS);
     }
 
     /**
@@ -72,37 +195,98 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public static Connector getInstance(String dbURL, String username, String password) throws SQLException {
+        return getInstance(dbURL, username, password, DEFAULT_POOL_MIN_SIZE, DEFAULT_POOL_MAX_SIZE);
+    }
+
+    /**
+     *
+     * @param dbURL Url to target DB - should start with "jdbc:postgresql://"
+     * @param username String with database username
+     * @param password String with database password
+     * @param poolMinSize Number of database connections that are always kept open
+     * @param poolMaxSize Maximum number of database connections used at the same time
+     * @return Connector instance
+     * @throws SQLException Directly from SQL driver if something else bad happens
+     */
+    public static synchronized Connector getInstance(String dbURL, String username, String password, int poolMinSize, int poolMaxSize) throws SQLException {
         if (singleInstance == null)
-            singleInstance = new Connector(dbURL, username, password);
+            singleInstance = new Connector(dbURL, username, password, poolMinSize, poolMaxSize);
 
         return singleInstance;
     }
 
+    /**
+     * Connects to the database in background, so that the caller can go on with other initializations.
+     * Until the connection is ready getInstance() waits for it instead of failing
+     * @param dbURL Url to target DB - should start with "jdbc:postgresql://"
+     * @param username String with database username
+     * @param password String with database password
+     * @param poolMinSize Number of database connections that are always kept open
+     * @param poolMaxSize Maximum number of database connections used at the same time
+     * @return A CompletableFuture completed with the Connector instance, or exceptionally with the SQLException
+     */
+    public static synchronized CompletableFuture<Connector> getInstanceAsync(String dbURL, String username, String password, int poolMinSize, int poolMaxSize) {
+        if (singleInstance != null)
+            return CompletableFuture.completedFuture(singleInstance);
+        if (pendingInstance == null) {
+            pendingInstance = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return getInstance(dbURL, username, password, poolMinSize, poolMaxSize);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+        return pendingInstance;
+    }
+
     /**
      *
      * @return Connector instance
-     * @throws IllegalStateException If no database is currently open
+     * @throws IllegalStateException If no database is currently open, or if opening it in background failed
      */
     public static Connector getInstance() throws IllegalStateException {
-        if (singleInstance == null)
-            throw new IllegalStateException("ALERT: No connection to the database");
+        Connector instance = singleInstance;
+        if (instance == null) {
+            CompletableFuture<Connector> pending = pendingInstance;
+            if (pending == null)
+                throw new IllegalStateException("ALERT: No connection to the database");
+            try {
+                instance = pending.join(); // Connection is still being opened by getInstanceAsync
+            } catch (CompletionException | CancellationException e) {
+                throw new IllegalStateException("ALERT: No connection to the database", e.getCause());
+            }
+        }
 
-        return singleInstance;
+        return instance;
     }
 
     /**
-     * Closes a connection to the database
+     * Closes all the connections to the database
      * @throws IllegalStateException If no database is currently open
      */
-    public void closeDb () throws IllegalStateException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-        try {
-            dbConnection.close();
-        } catch (java.sql.SQLException e) {
-            System.out.println("ALERT: Error closing database connection!");
-            e.printStackTrace();
-        }
-        dbConnection = null;
+    public synchronized void closeDb () throws IllegalStateException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+        connectionPool.close();
+        connectionPool = null;
+        eventCache.clear();
+    }
+
+    /**
+     * @return The pool of connections in use, mostly to read its metrics
+     * @throws IllegalStateException If no database is currently open
+     */
+    public ConnectionPool getConnectionPool() throws IllegalStateException {
+        ConnectionPool pool = connectionPool;
+        if (pool == null) throw new IllegalStateException("ALERT: No connection to the database");
+        return pool;
+    }
+
+    /**
+     * @return The cache of events read through getEvent and getEvents, mostly to read its metrics
+     */
+    public EventCache getEventCache() {
+        return eventCache;
     }
 
     /**
@@ -116,17 +300,19 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public UUID login(String username, String hashedPassword) throws IllegalStateException, IllegalArgumentException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        PreparedStatement loginStatement = dbConnection.prepareStatement(LOGIN);
-        loginStatement.setString(1, username);
-        loginStatement.setString(2, hashedPassword);
-        ResultSet rs = loginStatement.executeQuery();
-
-        if (!rs.next()) { // rs.next() returns false when the query has no results (username not present)
-            throw new IllegalArgumentException("Wrong username or password");
-        } else {
-            return UUID.fromString(rs.getString("userID"));
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement loginStatement = dbConnection.prepareStatement(LOGIN);
+            loginStatement.setString(1, username);
+            loginStatement.setString(2, hashedPassword);
+            try (ResultSet rs = loginStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results (username not present)
+                    throw new IllegalArgumentException("Wrong username or password");
+                } else {
+                    return rs.getObject("userID", UUID.class);
+                }
+            }
         }
     }
 
@@ -139,27 +325,31 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public User getUser(UUID userID) throws IllegalStateException, IllegalArgumentException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-        User returnUser;
-
-        PreparedStatement getUserStatement = dbConnection.prepareStatement(GET_USER);
-        getUserStatement.setString(1, userID.toString());
-        ResultSet rs = getUserStatement.executeQuery();
-
-        if (!rs.next()) { // rs.next() returns false when the query has no results (username not present)
-            throw new IllegalArgumentException("Non existing UUID");
-        } else {
-            Array favoriteCategoriesArray = rs.getArray("favoriteCategories"); // Get a Sql.Array object from the database
-            returnUser = new User(
-                    rs.getString("username"),
-                    rs.getString("hashedPassword"),
-                    UUID.fromString(rs.getString("userID")),
-                    new Sex(rs.getString("gender")),
-                    rs.getInt("age"),
-                    favoriteCategoriesArray == null ? null : (String[])favoriteCategoriesArray.getArray() // Cast it to a Strings Array
-            );
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            User returnUser;
+
+            PreparedStatement getUserStatement = dbConnection.prepareStatement(GET_USER);
+            getUserStatement.setObject(1, userID);
+            try (ResultSet rs = getUserStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results (username not present)
+                    throw new IllegalArgumentException("Non existing UUID");
+                } else {
+                    Array favoriteCategoriesArray = rs.getArray("favoriteCategories"); // Get a Sql.Array object from the database
+                    returnUser = new User(
+                            rs.getString("username"),
+                            rs.getString("hashedPassword"),
+                            rs.getObject("userID", UUID.class),
+                            new Sex(rs.getString("gender")),
+                            rs.getInt("age"),
+                            favoriteCategoriesArray == null ? null : (String[])favoriteCategoriesArray.getArray() // Cast it to a Strings Array
+                    );
+                    usernameCache.put(userID, returnUser.getUsername());
+                }
+                return returnUser;
+            }
         }
-        return returnUser;
     }
 
     /**
@@ -171,30 +361,34 @@ public class Connector {
      * @return True if insertion went right
      */
     public boolean insertUser (User user) throws IllegalStateException, IllegalArgumentException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        int i = 0;
-        try {
-            PreparedStatement insertUserStatement = dbConnection.prepareStatement(INSERT_USER);
-            insertUserStatement.setString(1, user.getUsername());
-            insertUserStatement.setString(2, user.getHashedPassword());
-            insertUserStatement.setString(3, user.getUserIDAsString());
-            insertUserStatement.setString(4, user.getGender().toString());
-            insertUserStatement.setObject(5, user.getAge(), java.sql.Types.INTEGER);
-            Array favoriteCategoriesArray = dbConnection.createArrayOf("TEXT", user.getFavoriteCategories()); // favoriteCategories
-            insertUserStatement.setArray(6, favoriteCategoriesArray);
-            i = insertUserStatement.executeUpdate();
-        } catch(java.sql.SQLException e) {
-            if (e.getMessage().contains("duplicate key value")) {
-                throw new IllegalArgumentException("ALERT: Duplicate user " + user.getUsername());
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            int i = 0;
+            try {
+                PreparedStatement insertUserStatement = dbConnection.prepareStatement(INSERT_USER);
+                insertUserStatement.setString(1, user.getUsername());
+                insertUserStatement.setString(2, user.getHashedPassword());
+                insertUserStatement.setObject(3, user.getUserID());
+                insertUserStatement.setString(4, user.getGender().toString());
+                insertUserStatement.setObject(5, user.getAge(), java.sql.Types.INTEGER);
+                Array favoriteCategoriesArray = dbConnection.createArrayOf("TEXT", user.getFavoriteCategories()); // favoriteCategories
+                insertUserStatement.setArray(6, favoriteCategoriesArray);
+                i = insertUserStatement.executeUpdate();
+            } catch(java.sql.SQLException e) {
+                if (e.getMessage().contains("duplicate key value")) {
+                    throw new IllegalArgumentException("ALERT: Duplicate user " + user.getUsername());
+                } else {
+                    throw e;
+                }
+            }
+            if (i == 1) {
+                usernameCache.put(user.getUserID(), user.getUsername());
+                return true;
             } else {
-                throw e;
+                throw new SQLException("ALERT: Error adding user to the database!\nSQL INSERT query returned " + i);
             }
         }
-        if (i == 1)
-            return true;
-        else
-            throw new SQLException("ALERT: Error adding user to the database!\nSQL INSERT query returned " + i);
     }
 
     /**
@@ -205,19 +399,21 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public boolean updateUser(User user) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
 
-        int i = 0;
-        PreparedStatement updateUserStatement = dbConnection.prepareStatement(UPDATE_USER);
-        updateUserStatement.setObject(1, user.getAge(), java.sql.Types.INTEGER);
-        Array favoriteCategoriesArray = dbConnection.createArrayOf("TEXT", user.getFavoriteCategories()); // favoriteCategories
-        updateUserStatement.setArray(2, favoriteCategoriesArray);
-        updateUserStatement.setString(3, user.getUserIDAsString());
-        i = updateUserStatement.executeUpdate();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            int i = 0;
+            PreparedStatement updateUserStatement = dbConnection.prepareStatement(UPDATE_USER);
+            updateUserStatement.setObject(1, user.getAge(), java.sql.Types.INTEGER);
+            Array favoriteCategoriesArray = dbConnection.createArrayOf("TEXT", user.getFavoriteCategories()); // favoriteCategories
+            updateUserStatement.setArray(2, favoriteCategoriesArray);
+            updateUserStatement.setObject(3, user.getUserID());
+            i = updateUserStatement.executeUpdate();
 
-        if (i != 1)
-            throw new SQLException("ALERT: Error updating user!\nSQL INSERT query returned " + i);
-        return true;
+            if (i != 1)
+                throw new SQLException("ALERT: Error updating user!\nSQL INSERT query returned " + i);
+            return true;
+        }
     }
 
     /**
@@ -229,19 +425,61 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public String getUsername(UUID userID) throws IllegalStateException, IllegalArgumentException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        String username;
-        PreparedStatement userExistStatement = dbConnection.prepareStatement(GET_USERNAME);
-        userExistStatement.setString(1, userID.toString());
-        ResultSet rs = userExistStatement.executeQuery();
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        String username = usernameCache.get(userID);
+        if (username != null)
+            return username;
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement userExistStatement = dbConnection.prepareStatement(GET_USERNAME);
+            userExistStatement.setObject(1, userID);
+            try (ResultSet rs = userExistStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results (userID not present)
+                    throw new IllegalArgumentException("ALERT: Specified user does not exist");
+                } else {
+                    username = rs.getString("username");
+                }
+                usernameCache.put(userID, username);
+                return username;
+            }
+        }
+    }
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results (userID not present)
-            throw new IllegalArgumentException("ALERT: Specified user does not exist");
-        } else {
-            username = rs.getString("username");
+    /**
+     * Returns the usernames of many users at once. Usernames not in cache are fetched with a single query.
+     * @param userIDs UUIDs of the users to look for
+     * @return A HashMap with userIDs as keys and usernames as values. Users not present in the database are not in the map.
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException Directly from SQL driver if something else bad happens
+     */
+    public HashMap<UUID, String> getUsernames(Collection<UUID> userIDs) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        HashMap<UUID, String> returnUsernames = new HashMap<>();
+        HashSet<UUID> missingUserIDs = new HashSet<>();
+        for (UUID userID : userIDs) {
+            String username = usernameCache.get(userID);
+            if (username != null)
+                returnUsernames.put(userID, username);
+            else
+                missingUserIDs.add(userID);
         }
-        return username;
+        if (missingUserIDs.isEmpty())
+            return returnUsernames;
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement usernamesStatement = dbConnection.prepareStatement(GET_USERNAMES);
+            usernamesStatement.setArray(1, dbConnection.createArrayOf("uuid", missingUserIDs.toArray(new UUID[0])));
+            try (ResultSet rs = usernamesStatement.executeQuery()) {
+                while (rs.next()) {
+                    UUID userID = rs.getObject("userID", UUID.class);
+                    String username = rs.getString("username");
+                    usernameCache.put(userID, username);
+                    returnUsernames.put(userID, username);
+                }
+            }
+        }
+        return returnUsernames;
     }
 
     /**
@@ -253,22 +491,24 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public ArrayList<UUID> getUserIDsByFavoriteCategory (String eventType) throws IllegalStateException, NoSuchElementException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        ArrayList<UUID> returnUserIDs = new ArrayList<>();
-
-        PreparedStatement UUIDbyCategoriesStatement = dbConnection.prepareStatement(GET_USERS_BY_FAVORITE);
-        UUIDbyCategoriesStatement.setString(1, eventType);
-        ResultSet rs = UUIDbyCategoriesStatement.executeQuery();
-
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: No user has selected category " + eventType + " as favorite category");
-        } else {
-            do {
-                returnUserIDs.add(UUID.fromString(rs.getString(1)));
-            } while (rs.next());
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> returnUserIDs = new ArrayList<>();
+
+            PreparedStatement UUIDbyCategoriesStatement = dbConnection.prepareStatement(GET_USERS_BY_FAVORITE);
+            UUIDbyCategoriesStatement.setString(1, eventType);
+            try (ResultSet rs = UUIDbyCategoriesStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    throw new NoSuchElementException("ALERT: No user has selected category " + eventType + " as favorite category");
+                } else {
+                    do {
+                        returnUserIDs.add(rs.getObject(1, UUID.class));
+                    } while (rs.next());
+                }
+                return returnUserIDs;
+            }
         }
-        return returnUserIDs;
     }
 
     /**
@@ -281,34 +521,25 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public ArrayList<UUID> getUserIDByOldRegistrations (UUID creatorID, String eventType) throws IllegalStateException, NoSuchElementException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        ArrayList<UUID> duplicatedUUID = new ArrayList<>();
-        ArrayList<UUID> returnUUID = new ArrayList<>();
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
 
-        PreparedStatement UUIDbyregistrationStatement = dbConnection.prepareStatement(GET_USERS_BY_PREVIOUS_REGISTRATION);
-        UUIDbyregistrationStatement.setString(1, creatorID.toString());
-        UUIDbyregistrationStatement.setString(2, eventType);
-        ResultSet rs = UUIDbyregistrationStatement.executeQuery();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> returnUUID = new ArrayList<>();
 
-        while (rs.next()) {
-            Array registeredUsersDbArray = rs.getArray("registeredUsers"); // Get a Sql.Array object from the database
-            String[] registeredUsers = (String[])registeredUsersDbArray.getArray(); // Cast it to a Strings Array
-            for (String userID: registeredUsers) {
-                duplicatedUUID.add(UUID.fromString(userID)); // Get UUID from String and add it to array
-            }
-        }
+            PreparedStatement UUIDbyregistrationStatement = dbConnection.prepareStatement(GET_USERS_BY_PREVIOUS_REGISTRATION);
+            UUIDbyregistrationStatement.setObject(1, creatorID);
+            UUIDbyregistrationStatement.setString(2, eventType);
+            try (ResultSet rs = UUIDbyregistrationStatement.executeQuery()) {
+                while (rs.next()) {
+                    returnUUID.add(rs.getObject(1, UUID.class)); // Already unique and without the creator, who does not need to be notified
+                }
+                if (returnUUID.size() == 0) {
+                    throw new NoSuchElementException("ALERT: No user has registered to events made by " + creatorID + " of category " + eventType);
+                }
 
-        for (UUID userID : duplicatedUUID) {
-            if (!returnUUID.contains(userID) && !userID.equals(creatorID)) { // Only unique UUID. Creator does not need to be notified
-                returnUUID.add(userID);
+                return returnUUID;
             }
         }
-        if (returnUUID.size() == 0) {
-            throw new NoSuchElementException("ALERT: No user has registered to events made by " + creatorID + " of category " + eventType);
-        }
-
-        return returnUUID;
     }
 
     /**
@@ -320,20 +551,22 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public ArrayList<String> getCategories() throws IllegalStateException, NoSuchElementException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        ArrayList<String> returnCategories = new ArrayList<>();
-        Statement categoriesStatement = dbConnection.createStatement();
-        ResultSet rs = categoriesStatement.executeQuery(GET_CATEGORIES_LIST);
-
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: No categories in the database");
-        } else {
-            do {
-                returnCategories.add(rs.getString(1));
-            } while (rs.next());
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<String> returnCategories = new ArrayList<>();
+            PreparedStatement categoriesStatement = dbConnection.prepareStatement(GET_CATEGORIES_LIST);
+            try (ResultSet rs = categoriesStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    throw new NoSuchElementException("ALERT: No categories in the database");
+                } else {
+                    do {
+                        returnCategories.add(rs.getString(1));
+                    } while (rs.next());
+                }
+                return returnCategories;
+            }
         }
-        return returnCategories;
     }
 
     /**
@@ -346,86 +579,93 @@ public class Connector {
      *                             attempted to cancel the currently running Statement
      */
     public boolean insertEvent (Event event) throws IllegalStateException, SQLException, SQLTimeoutException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        int parametersNumber = 0;
-        StringBuilder query = new StringBuilder();
-        query.append("INSERT INTO public."); // Beginning of query
-        query.append(event.getEventType()).append(" ("); // category name. Eg: "INSERT INTO public.soccer_game ("
-        // Event private fields can't be retrieved via getNonNullAttributesWithValue, also, these are common to all categories
-        query.append("eventID, creatorID, eventType, published, registeredUsers, currentState, participantsMax");
-        parametersNumber += 7; // Number of Event private fields
-
-        Iterator iterator;
-        LinkedHashMap<String, Object> setAttributes = event.getNonNullAttributesWithValue(); // Map with all currently valid attributes
-        iterator = setAttributes.entrySet().iterator(); // Get an iterator for our map
-        Class type; // This will hold the object type
-
-        while(iterator.hasNext()) {
-            Map.Entry entry = (Map.Entry)iterator.next(); // Casts the iterated item to a Map Entry to use it as such
-            type = entry.getValue().getClass();
-            if (type.equals(OptionalCost.class)) { // OptionalCost objects have 2 fields
-                query.append(", ").append(entry.getKey()).append("ID"); // COSTNAMEID - UUID of the cost
-                parametersNumber++;
-                query.append(", ").append(entry.getKey()).append("Amount"); // COSTNAMEAmount - Actual cost of the option
-                parametersNumber++;
-            } else {
-                query.append(", ").append(entry.getKey()); // adds the field (column) name to the query. Eg: ", title"
-                parametersNumber++;
-            }
-        }
-        query.append(") VALUES (?"); // Terminates fields (columns) list and starts placeholders. Notice the first question mark!
-        for (int i = 0; i < parametersNumber - 1; i++) // Minus one since the first question mark is present in the above line
-            query.append(", ?");
-        query.append(")"); // We now have the query that can be passed to PreparedStatement
-
-
-        int parameterIndex = 1; // Because starting at 1 is fun, Java devs thought
-        PreparedStatement addEventStatement = dbConnection.prepareStatement(query.toString());
-        addEventStatement.setString(parameterIndex, event.getEventIDAsString()); // Event private fields here - eventID
-        parameterIndex++;
-        addEventStatement.setString(parameterIndex, event.getCreatorIDAsString()); // creatorID
-        parameterIndex++;
-        addEventStatement.setString(parameterIndex, event.getEventType()); // eventType
-        parameterIndex++;
-        addEventStatement.setBoolean(parameterIndex, event.isPublished()); // published
-        parameterIndex++;
-        Array registeredUUIDDBArray = dbConnection.createArrayOf("VARCHAR", event.getRegisteredUsersAsString().toArray()); // registeredUsers
-        addEventStatement.setArray(parameterIndex, registeredUUIDDBArray);
-        parameterIndex++;
-        addEventStatement.setString(parameterIndex, event.getCurrentStateAsString()); // currentState
-        parameterIndex++;
-        addEventStatement.setInt(parameterIndex, event.getParticipantsMax()); // participantsMax
-        parameterIndex++;
-
-        iterator = setAttributes.entrySet().iterator(); // Reset to first element
-        while(iterator.hasNext()) {
-            Map.Entry entry = (Map.Entry)iterator.next(); // Casts the iterated item to a Map Entry to use it as such
-            type = entry.getValue().getClass();
-            if (type.equals(Integer.class)) {
-                addEventStatement.setInt(parameterIndex, (int) entry.getValue());
-            } else if (type.equals(Double.class)) {
-                addEventStatement.setDouble(parameterIndex, (double) entry.getValue());
-            } else if (type.equals(String.class)) {
-                addEventStatement.setString(parameterIndex, entry.getValue().toString());
-            } else if (type.equals(LocalDateTime.class)) {
-                addEventStatement.setObject(parameterIndex, entry.getValue()); // Postgresql driver natively supports LocalDateTime
-            } else if (type.equals(Duration.class)) {
-                addEventStatement.setLong(parameterIndex, ((Duration) entry.getValue()).getSeconds());
-            } else if (type.equals(Sex.class)) {
-                addEventStatement.setString(parameterIndex, entry.getValue().toString());
-            } else if (type.equals(OptionalCost.class)) {
-                addEventStatement.setString(parameterIndex, ((OptionalCost) entry.getValue()).getCostID().toString()); // OptionalCost ID
-                parameterIndex++;
-                addEventStatement.setInt(parameterIndex, ((OptionalCost) entry.getValue()).getCostAmount()); // OptionalCost Amount
-            } else {
-                throw new IllegalArgumentException("ALERT: Unexpected input type: " + type);
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        EventInsertTemplate insertTemplate = EventInsertTemplate.forType(event.getEventType());
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            boolean withRegistrations = event.registeredUsersCount() > 0;
+            if (withRegistrations)
+                dbConnection.setAutoCommit(false); // Event and registrations are added together or not at all
+            PreparedStatement addEventStatement = dbConnection.prepareStatement(insertTemplate.getSql());
+            insertTemplate.bind(addEventStatement, event);
+
+            int i = addEventStatement.executeUpdate();
+            if (i == 1 && withRegistrations) {
+                batchInsertRegistrations(dbConnection, Collections.singletonList(event));
+                dbConnection.commit();
             }
-            parameterIndex++;
+            if (i == 1)
+                eventTypeCache.put(event.getEventID(), event.getEventType());
+            return i == 1; // executeUpdate returns 1 if the row has been added successfully
         }
+    }
 
-        int i = addEventStatement.executeUpdate();
-        return i == 1; // executeUpdate returns 1 if the row has been added successfully
+    /**
+     * Inserts many Events in a single transaction, with one JDBC batch per category
+     * @param events List of Event-like objects, of any category
+     * @return The number of inserted events
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs. Nothing is inserted in this case
+     */
+    public int insertEvents(List<Event> events) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        if (events.isEmpty())
+            return 0;
+        LinkedHashMap<String, ArrayList<Event>> eventsByType = new LinkedHashMap<>();
+        for (Event event : events)
+            eventsByType.computeIfAbsent(event.getEventType(), k -> new ArrayList<>()).add(event);
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            dbConnection.setAutoCommit(false);
+            int inserted = 0;
+            for (Map.Entry<String, ArrayList<Event>> entry : eventsByType.entrySet()) {
+                EventInsertTemplate insertTemplate = EventInsertTemplate.forType(entry.getKey());
+                PreparedStatement addEventStatement = dbConnection.prepareStatement(insertTemplate.getSql());
+                int batched = 0;
+                for (Event event : entry.getValue()) {
+                    insertTemplate.bind(addEventStatement, event);
+                    addEventStatement.addBatch();
+                    if (++batched == EVENTS_BATCH_SIZE) {
+                        inserted += countBatchUpdates(addEventStatement.executeBatch());
+                        batched = 0;
+                    }
+                }
+                if (batched > 0)
+                    inserted += countBatchUpdates(addEventStatement.executeBatch());
+            }
+            if (inserted != events.size())
+                throw new SQLException("ALERT: Error adding events to the database!\nExpected " + events.size() + " rows, inserted " + inserted);
+            batchInsertRegistrations(dbConnection, events);
+            dbConnection.commit();
+            for (Event event : events)
+                eventTypeCache.put(event.getEventID(), event.getEventType());
+            return inserted;
+        }
+    }
+
+    /**
+     * Adds a registrations table row for every user already registered to the given events
+     * @param dbConnection Connection already borrowed by the caller, with autocommit disabled
+     * @param events Events already present in the database
+     * @throws SQLException Directly from SQL driver if something bad happens
+     */
+    private void batchInsertRegistrations(PooledConnection dbConnection, List<Event> events) throws SQLException {
+        int batched = 0;
+        PreparedStatement insertRegistrationStatement = dbConnection.prepareStatement(INSERT_REGISTRATION);
+        for (Event event : events) {
+            for (UUID userID : event.getRegisteredUsers()) {
+                insertRegistrationStatement.setObject(1, event.getEventID());
+                insertRegistrationStatement.setObject(2, userID);
+                insertRegistrationStatement.addBatch();
+                if (++batched == EVENTS_BATCH_SIZE) {
+                    insertRegistrationStatement.executeBatch();
+                    batched = 0;
+                }
+            }
+        }
+        if (batched > 0)
+            insertRegistrationStatement.executeBatch();
     }
 
     /**
@@ -440,16 +680,79 @@ public class Connector {
      *                             attempted to cancel the currently running Statement
      */
     public boolean updateEventState(UUID eventID, Event.State state) throws IllegalStateException, SQLException, SQLTimeoutException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            int i = 0;
+            PreparedStatement updateEventStateStatement = dbConnection.prepareStatement(UPDATE_EVENT_STATE);
+            updateEventStateStatement.setString(1, state.name());
+            updateEventStateStatement.setObject(2, eventID);
+            i = updateEventStateStatement.executeUpdate();
+            eventCache.invalidate(eventID);
+            if (i != 1)
+                throw new SQLException("ALERT: Error updating event!\nSQL INSERT query returned " + i);
+            return true;
+        }
+    }
 
-        int i = 0;
-        PreparedStatement updateEventStateStatement = dbConnection.prepareStatement(UPDATE_EVENT_STATE);
-        updateEventStateStatement.setString(1, state.name());
-        updateEventStateStatement.setString(2, eventID.toString());
-        i = updateEventStateStatement.executeUpdate();
-        if (i != 1)
-            throw new SQLException("ALERT: Error updating event!\nSQL INSERT query returned " + i);
-        return true;
+    /**
+     * Updates an Event state only if nobody else changed the event since it was read.
+     * If users have to be notified, the fan-out is queued in the outbox atomically with the update, see claimOutboxJobs
+     * @param eventID UUID of the Event to update in database
+     * @param state Event.State object of current State
+     * @param expectedVersion Version of the event the new state was computed from, see Event.getVersion
+     * @param notifyUsers True to queue the notifications of the new state
+     * @return True if the state was updated, false if the event has changed in the meantime and has to be read again
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     * @throws SQLTimeoutException When the driver has determined that the timeout value that was specified
+     *                             by the setQueryTimeout method has been exceeded and has at least
+     *                             attempted to cancel the currently running Statement
+     */
+    public boolean updateEventState(UUID eventID, Event.State state, int expectedVersion, boolean notifyUsers) throws IllegalStateException, SQLException, SQLTimeoutException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement updateEventStateStatement = dbConnection.prepareStatement(UPDATE_EVENT_STATE_VERSIONED);
+            updateEventStateStatement.setString(1, state.name());
+            updateEventStateStatement.setObject(2, eventID);
+            updateEventStateStatement.setInt(3, expectedVersion);
+            updateEventStateStatement.setBoolean(4, notifyUsers);
+            try (ResultSet rs = updateEventStateStatement.executeQuery()) {
+                return rs.next();
+            } finally {
+                eventCache.invalidate(eventID); // Also when the version did not match: the cached copy is the stale one
+            }
+        }
+    }
+
+    /**
+     * Moves every event whose state depends on time to its next state, with a few set-based UPDATEs in one transaction:
+     * OPEN to CLOSED or FAILED, CLOSED to OPEN or ENDED and published VALID events to OPEN.
+     * Notifications of the new states are queued in the outbox by the same transaction, see claimOutboxJobs
+     * @param currentDateTime LocalDateTime object with the date to check against, as in Event.updateState
+     * @return A LinkedHashMap with the UUID of every event that changed state as a key and its previous State as value
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs. No event is updated in this case
+     */
+    public LinkedHashMap<UUID, Event.State> updateEventStates(LocalDateTime currentDateTime) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        LinkedHashMap<UUID, Event.State> previousStates = new LinkedHashMap<>();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            dbConnection.setAutoCommit(false);
+            for (String sweepQuery : SWEEP_EVENT_STATES) {
+                PreparedStatement sweepStatement = dbConnection.prepareStatement(sweepQuery);
+                sweepStatement.setObject(1, currentDateTime); // Postgresql driver natively supports LocalDateTime
+                try (ResultSet rs = sweepStatement.executeQuery()) {
+                    while (rs.next())
+                        previousStates.put(rs.getObject(1, UUID.class), Event.State.valueOf(rs.getString(2)));
+                }
+            }
+            dbConnection.commit();
+        }
+        eventCache.invalidateAll(previousStates.keySet());
+        return previousStates;
     }
 
     /**
@@ -464,40 +767,86 @@ public class Connector {
      *                             attempted to cancel the currently running Statement
      */
     public boolean updateEventPublished(UUID eventID, boolean publishStatus) throws IllegalStateException, SQLException, SQLTimeoutException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            int i = 0;
+            PreparedStatement updateEventPublishedStatement = dbConnection.prepareStatement(UPDATE_EVENT_PUBLISHED);
+            updateEventPublishedStatement.setBoolean(1, publishStatus);
+            updateEventPublishedStatement.setObject(2, eventID);
+            i = updateEventPublishedStatement.executeUpdate();
+            eventCache.invalidate(eventID);
+            if (i != 1)
+                throw new SQLException("ALERT: Error updating event!\nSQL INSERT query returned " + i);
+            return true;
+        }
+    }
 
-        int i = 0;
-        PreparedStatement updateEventPublishedStatement = dbConnection.prepareStatement(UPDATE_EVENT_PUBLISHED);
-        updateEventPublishedStatement.setBoolean(1, publishStatus);
-        updateEventPublishedStatement.setString(2, eventID.toString());
-        i = updateEventPublishedStatement.executeUpdate();
-        if (i != 1)
-            throw new SQLException("ALERT: Error updating event!\nSQL INSERT query returned " + i);
-        return true;
+    /**
+     * Registers a user to an Event together with the optional costs they chose, in a single atomic statement.
+     * The seat is taken only if the event still accepts registrations and has not reached participantsMax,
+     * so concurrent registrations can never exceed it. Eligibility (i.e. age and sex) is up to the caller, see Event.register
+     * @param eventID UUID of the Event
+     * @param userID UUID of the User to register
+     * @param optionalCosts Optional costs chosen by the user, can be null or empty
+     * @return The version of the event after the registration
+     * @throws IllegalStateException If called before a database connection is established,
+     *                               or if the event is full or does not accept registrations anymore
+     * @throws IllegalArgumentException If the user is already registered to this event
+     * @throws SQLException If a database access error occurs. Nothing is saved in this case
+     * @throws SQLTimeoutException When the driver has determined that the timeout value that was specified
+     *                             by the setQueryTimeout method has been exceeded and has at least
+     *                             attempted to cancel the currently running Statement
+     */
+    public int insertRegistration(UUID eventID, UUID userID, LinkedHashMap<String, OptionalCost> optionalCosts) throws IllegalStateException, IllegalArgumentException, SQLException, SQLTimeoutException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        ArrayList<UUID> costIDs = new ArrayList<>();
+        if (optionalCosts != null) {
+            for (OptionalCost optionalCost : optionalCosts.values())
+                costIDs.add(optionalCost.getCostID());
+        }
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement registerUserStatement = dbConnection.prepareStatement(REGISTER_USER);
+            registerUserStatement.setObject(1, eventID);
+            registerUserStatement.setObject(2, userID);
+            registerUserStatement.setObject(3, userID);
+            registerUserStatement.setArray(4, dbConnection.createArrayOf("uuid", costIDs.toArray(new UUID[0])));
+            try (ResultSet rs = registerUserStatement.executeQuery()) {
+                eventCache.invalidate(eventID); // Even if no seat was taken, the event may have changed since it was cached
+                if (!rs.next()) // No seat was taken
+                    throw new IllegalStateException("ALERT: Event " + eventID + " has already reached max number of users or is not open");
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION.equals(e.getSQLState()))
+                throw new IllegalArgumentException("ALERT: User " + userID + " is already registered to this event", e);
+            throw e;
+        }
     }
 
     /**
-     * Updates an Event registered users
-     * @param event The Event to update in database
-     * @return True if everything went smoothly
+     * Deregisters a user from an Event, removing its row from the registrations table and freeing the seat
+     * @param eventID UUID of the Event
+     * @param userID UUID of the User to deregister
+     * @return True if the user was registered and now is not, false if there was no such registration
      * @throws IllegalStateException If called before a database connection is established
      * @throws SQLException If a database access error occurs
      * @throws SQLTimeoutException When the driver has determined that the timeout value that was specified
      *                             by the setQueryTimeout method has been exceeded and has at least
      *                             attempted to cancel the currently running Statement
      */
-    public boolean updateEventRegistrations(Event event) throws IllegalStateException, SQLException, SQLTimeoutException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        int i = 0;
-        PreparedStatement updateEventRegistrationsStatement = dbConnection.prepareStatement(UPDATE_EVENT_REGISTERED);
-        Array registeredUUIDDBArray = dbConnection.createArrayOf("VARCHAR", event.getRegisteredUsersAsString().toArray());
-        updateEventRegistrationsStatement.setArray(1, registeredUUIDDBArray); // registeredUsers
-        updateEventRegistrationsStatement.setString(2, event.getEventIDAsString()); // eventID
-        i = updateEventRegistrationsStatement.executeUpdate();
-        if (i != 1)
-            throw new SQLException("ALERT: Error updating event!\nSQL INSERT query returned " + i);
-        return true;
+    public boolean deleteRegistration(UUID eventID, UUID userID) throws IllegalStateException, SQLException, SQLTimeoutException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement deregisterUserStatement = dbConnection.prepareStatement(DEREGISTER_USER);
+            deregisterUserStatement.setObject(1, eventID);
+            deregisterUserStatement.setObject(2, userID);
+            boolean deregistered = deregisterUserStatement.executeUpdate() == 1; // (eventID, userID) is the primary key, so at most one row
+            eventCache.invalidate(eventID);
+            return deregistered;
+        }
     }
 
     /**
@@ -507,22 +856,45 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public ArrayList<UUID> getActiveEvents() throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> returnEvents = new ArrayList<>();
+
+            PreparedStatement getEventsStatement = dbConnection.prepareStatement(GET_ACTIVE_EVENTS_LIST);
+            try (ResultSet rs = getEventsStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    throw new NoSuchElementException("ALERT: No events in the database");
+                } else {
+                    do {
+                        returnEvents.add(rs.getObject(1, UUID.class));
+                    } while (rs.next());
+                }
 
-        ArrayList<UUID> returnEvents = new ArrayList<>();
+                return returnEvents;
+            }
+        }
+    }
 
-        Statement getEventsStatement = dbConnection.createStatement();
-        ResultSet rs = getEventsStatement.executeQuery(GET_ACTIVE_EVENTS_LIST);
+    /**
+     * Returns when time alone will next change the state of every OPEN and CLOSED event, see Event.getNextStateChangeDate
+     * @return A HashMap with eventIDs as keys and next state change dates as values, empty if there are no such events
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public HashMap<UUID, LocalDateTime> getNextStateChangeDates() throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: No events in the database");
-        } else {
-            do {
-                returnEvents.add(UUID.fromString(rs.getString(1)));
-            } while (rs.next());
-        }
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            HashMap<UUID, LocalDateTime> returnDates = new HashMap<>();
 
-        return returnEvents;
+            PreparedStatement nextStateChangeDatesStatement = dbConnection.prepareStatement(GET_NEXT_STATE_CHANGE_DATES);
+            try (ResultSet rs = nextStateChangeDatesStatement.executeQuery()) {
+                while (rs.next())
+                    returnDates.put(rs.getObject(1, UUID.class), rs.getObject(2, LocalDateTime.class));
+            }
+            return returnDates;
+        }
     }
 
     /**
@@ -532,22 +904,96 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public ArrayList<UUID> getOpenEvents() throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> returnEvents = new ArrayList<>();
+
+            PreparedStatement getEventsStatement = dbConnection.prepareStatement(GET_OPEN_EVENTS_LIST);
+            try (ResultSet rs = getEventsStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    throw new NoSuchElementException("ALERT: No events in the database");
+                } else {
+                    do {
+                        returnEvents.add(rs.getObject(1, UUID.class));
+                    } while (rs.next());
+                }
 
-        ArrayList<UUID> returnEvents = new ArrayList<>();
+                return returnEvents;
+            }
+        }
+    }
 
-        Statement getEventsStatement = dbConnection.createStatement();
-        ResultSet rs = getEventsStatement.executeQuery(GET_OPEN_EVENTS_LIST);
+    /**
+     * Lists a page of OPEN events satisfying a filter, in the given order.
+     * Pages are read from a cursor with keyset pagination, so every page costs the same whatever its position,
+     * as long as the sort column is indexed (see db/migrations)
+     * @param filter EventFilter with the conditions events have to satisfy
+     * @param sort EventSort with the order of the events
+     * @param cursor EventCursor returned in a previous page with the same filter and sort, null for the first page
+     * @param limit Maximum number of events in the page
+     * @return EventPage - can have 0 events if none satisfies the filter
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws IllegalArgumentException If limit is not positive or cursor was returned for another sort
+     * @throws SQLException If a database access error occurs
+     */
+    public EventPage findOpenEvents(EventFilter filter, EventSort sort, EventCursor cursor, int limit) throws IllegalStateException, IllegalArgumentException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (limit <= 0)
+            throw new IllegalArgumentException("ALERT: Page limit must be positive, got " + limit);
+        if (cursor != null && cursor.getSort() != sort)
+            throw new IllegalArgumentException("ALERT: Cursor was returned for sort " + cursor.getSort() + ", not " + sort);
+
+        boolean backward = cursor != null && cursor.isBackward();
+        // Walking backward reads the previous page in reverse order, then turns it around
+        String query = String.format(FIND_OPEN_EVENTS, sort.getColumnName(), backward ? "<" : ">", backward ? "DESC" : "ASC");
+        String location = filter.getLocation() == null ? null :
+                "%" + filter.getLocation().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%"; // Wildcards are searched as text
+        ArrayList<Object> parameters = new ArrayList<>();
+        for (Object filterValue : new Object[] {filter.getEventType(), filter.getStartFrom(), filter.getStartTo(), location,
+                filter.getMaxCost(), filter.getMinFreeSpots()}) {
+            parameters.add(filterValue); // Once for the null check, once for the comparison
+            parameters.add(filterValue);
+        }
+        parameters.add(cursor == null ? null : cursor.getEventID());
+        parameters.add(cursor == null ? null : cursor.getSortValue());
+        parameters.add(cursor == null ? null : cursor.getEventID());
+        parameters.add(limit + 1); // One more tells if there is another page in the same direction
+
+        ArrayList<UUID> eventIDs = new ArrayList<>();
+        ArrayList<LocalDateTime> sortValues = new ArrayList<>();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement findOpenEventsStatement = dbConnection.prepareStatement(query); // Four texts in all, see FIND_OPEN_EVENTS
+            for (int i = 0; i < parameters.size(); i++) // Nulls get their type from the CASTs in the query
+                findOpenEventsStatement.setObject(i + 1, parameters.get(i)); // Postgresql driver natively supports LocalDateTime and UUID
+            try (ResultSet rs = findOpenEventsStatement.executeQuery()) {
+                while (rs.next()) {
+                    eventIDs.add(rs.getObject(1, UUID.class));
+                    sortValues.add(rs.getObject(2, LocalDateTime.class));
+                }
+            }
+        }
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: No events in the database");
-        } else {
-            do {
-                returnEvents.add(UUID.fromString(rs.getString(1)));
-            } while (rs.next());
+        boolean morePages = eventIDs.size() > limit;
+        if (morePages) {
+            eventIDs.remove(limit);
+            sortValues.remove(limit);
+        }
+        if (backward) {
+            if (eventIDs.isEmpty()) // Everything before the cursor is gone in the meantime
+                return findOpenEvents(filter, sort, null, limit);
+            Collections.reverse(eventIDs);
+            Collections.reverse(sortValues);
         }
 
-        return returnEvents;
+        EventCursor nextCursor = null;
+        EventCursor previousCursor = null;
+        int last = eventIDs.size() - 1;
+        if (backward || morePages) // Coming back, the page we left is still after this one
+            nextCursor = new EventCursor(sort, sortValues.get(last), eventIDs.get(last), false);
+        if (backward ? morePages : cursor != null && !eventIDs.isEmpty())
+            previousCursor = new EventCursor(sort, sortValues.get(0), eventIDs.get(0), true);
+        return new EventPage(eventIDs, nextCursor, previousCursor);
     }
 
     /**
@@ -558,23 +1004,25 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public ArrayList<UUID> getEventsByCreator(UUID userID) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        ArrayList<UUID> returnEventIDs = new ArrayList<>();
-
-        PreparedStatement getEventsByCreatorStatement = dbConnection.prepareStatement(GET_EVENTS_LIST_BY_CREATORID);
-        getEventsByCreatorStatement.setString(1, userID.toString());
-        ResultSet rs = getEventsByCreatorStatement.executeQuery();
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> returnEventIDs = new ArrayList<>();
+
+            PreparedStatement getEventsByCreatorStatement = dbConnection.prepareStatement(GET_EVENTS_LIST_BY_CREATORID);
+            getEventsByCreatorStatement.setObject(1, userID);
+            try (ResultSet rs = getEventsByCreatorStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    throw new NoSuchElementException("ALERT: No events were created by user " + userID);
+                } else {
+                    do {
+                        returnEventIDs.add(rs.getObject(1, UUID.class));
+                    } while (rs.next());
+                }
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: No events were created by user " + userID);
-        } else {
-            do {
-                returnEventIDs.add(UUID.fromString(rs.getString(1)));
-            } while (rs.next());
+                return returnEventIDs;
+            }
         }
-
-        return returnEventIDs;
     }
 
     /**
@@ -586,23 +1034,25 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public ArrayList<UUID> getEventsByRegistration(UUID userID) throws IllegalStateException, NoSuchElementException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        ArrayList<UUID> returnEvents = new ArrayList<>();
-
-        PreparedStatement getEventsByRegistrationStatement = dbConnection.prepareStatement(GET_EVENTS_LIST_BY_REGISTERED);
-        getEventsByRegistrationStatement.setString(1, userID.toString());
-        ResultSet rs = getEventsByRegistrationStatement.executeQuery();
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> returnEvents = new ArrayList<>();
+
+            PreparedStatement getEventsByRegistrationStatement = dbConnection.prepareStatement(GET_EVENTS_LIST_BY_REGISTERED);
+            getEventsByRegistrationStatement.setObject(1, userID);
+            try (ResultSet rs = getEventsByRegistrationStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    throw new NoSuchElementException("ALERT: User " + userID + " hasn't registered for any event");
+                } else {
+                    do {
+                        returnEvents.add(rs.getObject(1, UUID.class));
+                    } while (rs.next());
+                }
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: User " + userID + " hasn't registered for any event");
-        } else {
-            do {
-                returnEvents.add(UUID.fromString(rs.getString(1)));
-            } while (rs.next());
+                return returnEvents;
+            }
         }
-
-        return returnEvents;
     }
 
     /**
@@ -618,22 +1068,25 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public void insertOptionalCosts(LinkedHashMap<String, OptionalCost> optionalCosts, UUID eventID, UUID userID) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-        if (optionalCosts == null) return;
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
 
-        Iterator iterator  = optionalCosts.entrySet().iterator(); // Get an iterator for our map
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            if (optionalCosts == null) return;
 
-        int i = 0;
-        while(iterator.hasNext()) {
-            Map.Entry entry = (Map.Entry)iterator.next(); // Casts the iterated item to a Map Entry to use it as such
-            PreparedStatement insertOptionalCostStatement = dbConnection.prepareStatement(INSERT_OPTIONAL_COST);
-            OptionalCost optionalCost = (OptionalCost) entry.getValue();
-            insertOptionalCostStatement.setString(1, optionalCost.getCostID().toString());
-            insertOptionalCostStatement.setString(2, eventID.toString());
-            insertOptionalCostStatement.setString(3, userID.toString());
-            i = insertOptionalCostStatement.executeUpdate();
-            if (i != 1)
-                throw new SQLException("ALERT: Error adding user to the database!\nSQL INSERT query returned " + i);
+            Iterator iterator  = optionalCosts.entrySet().iterator(); // Get an iterator for our map
+
+            int i = 0;
+            while(iterator.hasNext()) {
+                Map.Entry entry = (Map.Entry)iterator.next(); // Casts the iterated item to a Map Entry to use it as such
+                PreparedStatement insertOptionalCostStatement = dbConnection.prepareStatement(INSERT_OPTIONAL_COST);
+                OptionalCost optionalCost = (OptionalCost) entry.getValue();
+                insertOptionalCostStatement.setObject(1, optionalCost.getCostID());
+                insertOptionalCostStatement.setObject(2, eventID);
+                insertOptionalCostStatement.setObject(3, userID);
+                i = insertOptionalCostStatement.executeUpdate();
+                if (i != 1)
+                    throw new SQLException("ALERT: Error adding user to the database!\nSQL INSERT query returned " + i);
+            }
         }
     }
 
@@ -646,24 +1099,49 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public ArrayList<UUID> getOptionalCosts(UUID userID, UUID eventID) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        ArrayList<UUID> returnOptionalCosts = new ArrayList<>();
-
-        PreparedStatement getOptionalCostsStatement = dbConnection.prepareStatement(GET_OPTIONAL_COSTS);
-        getOptionalCostsStatement.setString(1, eventID.toString());
-        getOptionalCostsStatement.setString(2, userID.toString());
-        ResultSet rs = getOptionalCostsStatement.executeQuery();
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> returnOptionalCosts = new ArrayList<>();
+
+            PreparedStatement getOptionalCostsStatement = dbConnection.prepareStatement(GET_OPTIONAL_COSTS);
+            getOptionalCostsStatement.setObject(1, eventID);
+            getOptionalCostsStatement.setObject(2, userID);
+            try (ResultSet rs = getOptionalCostsStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    return returnOptionalCosts;
+                } else {
+                    do {
+                        UUID costID = rs.getObject(1, UUID.class);
+                        returnOptionalCosts.add(costID);
+                    } while (rs.next());
+                }
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            return returnOptionalCosts;
-        } else {
-            do {
-                UUID costID = UUID.fromString(rs.getString(1));
-                returnOptionalCosts.add(costID);
-            } while (rs.next());
+                return returnOptionalCosts;
+            }
         }
+    }
 
+    /**
+     * Gets the OptionalCosts chosen by all the users registered to an event, in a single query
+     * @param eventID UUID of the event to search costs for
+     * @return HashMap with the UUID of a user as a key and the UUIDs of the OptionalCosts they chose as value.
+     *         Users who chose none are not present in the map.
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public HashMap<UUID, ArrayList<UUID>> getOptionalCostsByEvent(UUID eventID) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        HashMap<UUID, ArrayList<UUID>> returnOptionalCosts = new HashMap<>();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement getOptionalCostsStatement = dbConnection.prepareStatement(GET_OPTIONAL_COSTS_BY_EVENT);
+            getOptionalCostsStatement.setObject(1, eventID);
+            try (ResultSet rs = getOptionalCostsStatement.executeQuery()) {
+                while (rs.next())
+                    returnOptionalCosts.computeIfAbsent(rs.getObject(1, UUID.class), k -> new ArrayList<>()).add(rs.getObject(2, UUID.class));
+            }
+        }
         return returnOptionalCosts;
     }
 
@@ -675,21 +1153,239 @@ public class Connector {
      * @return True if insertion went right
      */
     public boolean insertNotification(Notification notification) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        unreadCounters.beginWrite(); // Counts read from the database meanwhile are not stored, see UnreadNotificationCounters.reconcile
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            int i = 0;
+                PreparedStatement insertUserStatement = dbConnection.prepareStatement(INSERT_NOTIFICATION);
+                insertUserStatement.setObject(1, notification.getNotificationID());
+                insertUserStatement.setObject(2, notification.getEventID());
+                insertUserStatement.setObject(3, notification.getRecipientID());
+                insertUserStatement.setBoolean(4, notification.isRead());
+                insertUserStatement.setString(5, notification.getTitle());
+                insertUserStatement.setString(6, notification.getContent());
+                i = insertUserStatement.executeUpdate();
+            if (i == 1) {
+                if (!notification.isRead())
+                    unreadCounters.add(notification.getRecipientID(), 1);
+                return true;
+            } else {
+                throw new SQLException("ALERT: Error adding user to the database!\nSQL INSERT query returned " + i);
+            }
+        } finally {
+            unreadCounters.endWrite();
+        }
+    }
+
+    /**
+     * Inserts many Notification objects in a single transaction, so that a fan-out costs one commit instead of one per recipient.
+     * Small lists are sent as batched INSERTs, big ones are streamed with PostgreSQL COPY.
+     * Notifications whose ID is already in the database are skipped, so a fan-out with deterministic IDs can be retried safely
+     * @param notifications List of Notification objects already populated
+     * @return The number of inserted notifications, less than the list size if some were already there
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException Directly from SQL driver if something else bad happens. Nothing is inserted in this case
+     */
+    public int insertNotifications(List<Notification> notifications) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        if (notifications.isEmpty())
+            return 0;
+        unreadCounters.beginWrite();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            dbConnection.setAutoCommit(false);
+            int inserted;
+            if (notifications.size() >= NOTIFICATIONS_COPY_THRESHOLD)
+                inserted = copyNotifications(dbConnection, notifications);
+            else
+                inserted = batchInsertNotifications(dbConnection, notifications);
+            dbConnection.commit();
+            boolean duplicates = inserted < notifications.size(); // Unknown which ones, counters of all recipients are read again
+            for (Notification notification : notifications) {
+                if (duplicates)
+                    unreadCounters.invalidate(notification.getRecipientID());
+                else if (!notification.isRead())
+                    unreadCounters.add(notification.getRecipientID(), 1);
+            }
+            return inserted;
+        } finally {
+            unreadCounters.endWrite();
+        }
+    }
+
+    /**
+     * @param dbConnection Connection already borrowed by the caller, with autocommit disabled
+     * @param notifications List of Notification objects already populated
+     * @return The number of inserted notifications
+     * @throws SQLException Directly from SQL driver if something bad happens
+     */
+    private int batchInsertNotifications(PooledConnection dbConnection, List<Notification> notifications) throws SQLException {
+        int inserted = 0;
+        int batched = 0;
+        PreparedStatement insertNotificationStatement = dbConnection.prepareStatement(INSERT_NOTIFICATION_IF_ABSENT);
+        for (Notification notification : notifications) {
+            insertNotificationStatement.setObject(1, notification.getNotificationID());
+            insertNotificationStatement.setObject(2, notification.getEventID());
+            insertNotificationStatement.setObject(3, notification.getRecipientID());
+            insertNotificationStatement.setBoolean(4, notification.isRead());
+            insertNotificationStatement.setString(5, notification.getTitle());
+            insertNotificationStatement.setString(6, notification.getContent());
+            insertNotificationStatement.addBatch();
+            if (++batched == NOTIFICATIONS_BATCH_SIZE) {
+                inserted += countBatchUpdates(insertNotificationStatement.executeBatch());
+                batched = 0;
+            }
+        }
+        if (batched > 0)
+            inserted += countBatchUpdates(insertNotificationStatement.executeBatch());
+        return inserted;
+    }
+
+    /**
+     * @param updateCounts Array returned by executeBatch
+     * @return Total number of rows affected by the batch
+     */
+    private static int countBatchUpdates(int[] updateCounts) {
+        int count = 0;
+        for (int updateCount : updateCounts)
+            count += updateCount == Statement.SUCCESS_NO_INFO ? 1 : updateCount; // Driver may not report single counts
+        return count;
+    }
+
+    /**
+     * @param dbConnection Connection already borrowed by the caller, with autocommit disabled
+     * @param notifications List of Notification objects already populated
+     * @return The number of inserted notifications
+     * @throws SQLException Directly from SQL driver if something bad happens
+     */
+    private int copyNotifications(PooledConnection dbConnection, List<Notification> notifications) throws SQLException {
+        StringBuilder csv = new StringBuilder();
+        for (Notification notification : notifications) {
+            csv.append(notification.getNotificationID()).append(',');
+            csv.append(notification.getEventID()).append(',');
+            csv.append(notification.getRecipientID()).append(',');
+            csv.append(notification.isRead()).append(',');
+            appendCsvValue(csv, notification.getTitle());
+            csv.append(',');
+            appendCsvValue(csv, notification.getContent());
+            csv.append('\n');
+        }
+        dbConnection.prepareStatement(CREATE_NOTIFICATIONS_COPY_TABLE).executeUpdate(); // Once per connection, it is kept until closed
+        try {
+            CopyManager copyManager = dbConnection.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn(COPY_NOTIFICATIONS, new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new SQLException("ALERT: Error streaming notifications to the database", e);
+        }
+        return dbConnection.prepareStatement(INSERT_COPIED_NOTIFICATIONS).executeUpdate();
+    }
 
+    /**
+     * Appends a value to a CSV row, quoted so that commas and newlines in notification texts are preserved.
+     * A null value is left empty, which COPY reads as NULL.
+     * @param csv StringBuilder with the row being built
+     * @param value String to append, can be null
+     */
+    private static void appendCsvValue(StringBuilder csv, String value) {
+        if (value == null)
+            return;
+        csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Claims the oldest fan-outs waiting in the outbox, so that they can be sent and then removed with deleteOutboxJobs.
+     * Claimed jobs are skipped by other relays until the lease expires: if they are not deleted by then,
+     * i.e. because the relay crashed, they are claimed again and their notifications are sent with the same IDs.
+     * Jobs already claimed maxAttempts times are left to deadLetterOutboxJobs
+     * @param limit Maximum number of jobs to claim
+     * @param leaseMillis How long the jobs are reserved to the caller
+     * @param maxAttempts Number of claims after which a job is given up
+     * @return ArrayList of OutboxJob, oldest first - can be 0 elements long if the outbox is empty
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public ArrayList<OutboxJob> claimOutboxJobs(int limit, long leaseMillis, int maxAttempts) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        ArrayList<OutboxJob> jobs = new ArrayList<>();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement claimOutboxJobsStatement = dbConnection.prepareStatement(CLAIM_OUTBOX_JOBS);
+            claimOutboxJobsStatement.setLong(1, leaseMillis);
+            claimOutboxJobsStatement.setInt(2, maxAttempts);
+            claimOutboxJobsStatement.setInt(3, limit);
+            try (ResultSet rs = claimOutboxJobsStatement.executeQuery()) {
+                while (rs.next()) {
+                    Array recipientsDbArray = rs.getArray(4);
+                    ArrayList<UUID> recipients = null; // Queued before the outbox stored them
+                    if (recipientsDbArray != null)
+                        recipients = new ArrayList<>(Arrays.asList((UUID[]) recipientsDbArray.getArray())); // The driver decodes uuid[] to UUIDs
+                    jobs.add(new OutboxJob(rs.getObject(1, UUID.class), rs.getInt(2), Event.State.valueOf(rs.getString(3)), recipients));
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Removes from the outbox fan-outs whose notifications have been saved
+     * @param jobs OutboxJob objects returned by claimOutboxJobs
+     * @return Number of removed jobs
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public int deleteOutboxJobs(Collection<OutboxJob> jobs) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        if (jobs.isEmpty())
+            return 0;
+        UUID[] eventIDs = new UUID[jobs.size()];
+        Integer[] versions = new Integer[jobs.size()];
         int i = 0;
-            PreparedStatement insertUserStatement = dbConnection.prepareStatement(INSERT_NOTIFICATION);
-            insertUserStatement.setString(1, notification.getNotificationID().toString());
-            insertUserStatement.setString(2, notification.getEventID().toString());
-            insertUserStatement.setString(3, notification.getRecipientID().toString());
-            insertUserStatement.setBoolean(4, notification.isRead());
-            insertUserStatement.setString(5, notification.getTitle());
-            insertUserStatement.setString(6, notification.getContent());
-            i = insertUserStatement.executeUpdate();
-        if (i == 1)
-            return true;
-        else
-            throw new SQLException("ALERT: Error adding user to the database!\nSQL INSERT query returned " + i);
+        for (OutboxJob job : jobs) {
+            eventIDs[i] = job.getEventID();
+            versions[i++] = job.getVersion();
+        }
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement deleteOutboxJobsStatement = dbConnection.prepareStatement(DELETE_OUTBOX_JOBS);
+            deleteOutboxJobsStatement.setArray(1, dbConnection.createArrayOf("uuid", eventIDs));
+            deleteOutboxJobsStatement.setArray(2, dbConnection.createArrayOf("INTEGER", versions));
+            return deleteOutboxJobsStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Moves to notification_outbox_dead the fan-outs that have been claimed maxAttempts times without being sent,
+     * so that they stop being retried and do not hold up the outbox
+     * @param maxAttempts Number of claims after which a job is given up, as passed to claimOutboxJobs
+     * @return Number of jobs moved
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public int deadLetterOutboxJobs(int maxAttempts) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement deadLetterOutboxJobsStatement = dbConnection.prepareStatement(DEAD_LETTER_OUTBOX_JOBS);
+            deadLetterOutboxJobsStatement.setInt(1, maxAttempts);
+            return deadLetterOutboxJobsStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * @return Number of fan-outs waiting in the outbox, claimed or not
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public int getOutboxJobsCount() throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            try (ResultSet rs = dbConnection.prepareStatement(COUNT_OUTBOX_JOBS).executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
     }
 
     /**
@@ -700,45 +1396,53 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public ArrayList<UUID> getAllNotifications(UUID userID) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        ArrayList<UUID> notificationIDs = new ArrayList<>();
-
-        PreparedStatement getNotificationsByUserStatement = dbConnection.prepareStatement(GET_NOTIFICATIONS_BY_USER);
-        getNotificationsByUserStatement.setString(1, userID.toString());
-        ResultSet rs = getNotificationsByUserStatement.executeQuery();
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<UUID> notificationIDs = new ArrayList<>();
+
+            PreparedStatement getNotificationsByUserStatement = dbConnection.prepareStatement(GET_NOTIFICATIONS_BY_USER);
+            getNotificationsByUserStatement.setObject(1, userID);
+            try (ResultSet rs = getNotificationsByUserStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    return null;
+                } else {
+                    do {
+                        UUID notificationID = rs.getObject(1, UUID.class);
+                        notificationIDs.add(notificationID);
+                    } while (rs.next());
+                }
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            return null;
-        } else {
-            do {
-                UUID notificationID = UUID.fromString(rs.getString(1));
-                notificationIDs.add(notificationID);
-            } while (rs.next());
+                return notificationIDs;
+            }
         }
-
-        return notificationIDs;
     }
 
     /**
-     * Returns the number of unread notifications a user have
+     * Returns the number of unread notifications a user have.
+     * The value is served from memory and counted again in the database only once in a while.
      * @param userID User object for which we're looking for notifications
      * @return Number of unread notifications
      * @throws IllegalStateException If called before a database connection is established
      * @throws SQLException If a database access error occurs
      */
     public int getUnreadNotificationsCountByUser(UUID userID) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        int count = 0;
-
-        PreparedStatement getNotificationsByUserStatement = dbConnection.prepareStatement(GET_UNREAD_NOTIFICATIONS_BY_USER);
-        getNotificationsByUserStatement.setString(1, userID.toString());
-        ResultSet rs = getNotificationsByUserStatement.executeQuery();
-
-        while (rs.next()) count++;
-
-        return count;
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        Integer cachedCount = unreadCounters.get(userID);
+        if (cachedCount != null)
+            return cachedCount;
+        long countersStamp = unreadCounters.getStamp();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement getNotificationsByUserStatement = dbConnection.prepareStatement(GET_UNREAD_NOTIFICATIONS_COUNT_BY_USER);
+            getNotificationsByUserStatement.setObject(1, userID);
+            try (ResultSet rs = getNotificationsByUserStatement.executeQuery()) {
+                rs.next(); // COUNT(*) always returns a row
+                int count = rs.getInt(1);
+                unreadCounters.reconcile(userID, count, countersStamp);
+                return count;
+            }
+        }
     }
 
     /**
@@ -749,16 +1453,78 @@ public class Connector {
      * @throws SQLException Directly from SQL driver if something else bad happens
      */
     public boolean markNotificationRead(UUID notificationID, boolean readStatus) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        unreadCounters.beginWrite();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement markNotificationRead = dbConnection.prepareStatement(UPDATE_NOTIFICATION_READ);
+            markNotificationRead.setObject(1, notificationID);
+            markNotificationRead.setBoolean(2, readStatus); // read status, now hardcoded as read
+            try (ResultSet rs = markNotificationRead.executeQuery()) { // Returns the status before the update
+                if (!rs.next())
+                    throw new SQLException("ALERT: Error updating notification!\nNo notification with UUID " + notificationID);
+                if (rs.getBoolean("read") != readStatus)
+                    unreadCounters.add(rs.getObject("recipientID", UUID.class), readStatus ? -1 : 1);
+            }
+            return true;
+        } finally {
+            unreadCounters.endWrite();
+        }
+    }
 
-        int i = 0;
-        PreparedStatement markNotificationRead = dbConnection.prepareStatement(UPDATE_NOTIFICATION_READ);
-        markNotificationRead.setBoolean(1, readStatus); // read status, now hardcoded as read
-        markNotificationRead.setString(2, notificationID.toString());
-        i = markNotificationRead.executeUpdate();
-        if (i != 1)
-            throw new SQLException("ALERT: Error updating notification!\nSQL INSERT query returned " + i);
-        return true;
+    /**
+     * Marks many notifications at once with a single UPDATE, which is atomic: either all of them change or none does
+     * @param notificationIDs UUIDs of the notifications to update
+     * @param readStatus True to mark them as read, false as unread
+     * @return Number of notifications whose status actually changed
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException Directly from SQL driver if something else bad happens
+     */
+    public int markNotificationsRead(Collection<UUID> notificationIDs, boolean readStatus) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        if (notificationIDs.isEmpty())
+            return 0;
+        unreadCounters.beginWrite();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            int changed = 0;
+            HashMap<UUID, Integer> changesByRecipient = new HashMap<>();
+            PreparedStatement markNotificationsRead = dbConnection.prepareStatement(UPDATE_NOTIFICATIONS_READ);
+            markNotificationsRead.setArray(1, dbConnection.createArrayOf("uuid", notificationIDs.toArray(new UUID[0])));
+            markNotificationsRead.setBoolean(2, readStatus);
+            markNotificationsRead.setBoolean(3, readStatus);
+            try (ResultSet rs = markNotificationsRead.executeQuery()) { // Returns a row for every notification that changed
+                while (rs.next()) {
+                    changesByRecipient.merge(rs.getObject("recipientID", UUID.class), 1, Integer::sum);
+                    changed++;
+                }
+            }
+            for (Map.Entry<UUID, Integer> entry : changesByRecipient.entrySet())
+                unreadCounters.add(entry.getKey(), readStatus ? -entry.getValue() : entry.getValue());
+            return changed;
+        } finally {
+            unreadCounters.endWrite();
+        }
+    }
+
+    /**
+     * Marks as read all the notifications of a user
+     * @param userID UUID of the recipient
+     * @return Number of notifications that were unread
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException Directly from SQL driver if something else bad happens
+     */
+    public int markAllNotificationsRead(UUID userID) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        long countersStamp = unreadCounters.getStamp();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement markAllNotificationsRead = dbConnection.prepareStatement(UPDATE_ALL_NOTIFICATIONS_READ);
+            markAllNotificationsRead.setObject(1, userID);
+            int i = markAllNotificationsRead.executeUpdate();
+            unreadCounters.reconcile(userID, 0, countersStamp); // Unless a notification arrived in the meantime
+            return i;
+        }
     }
 
     /**
@@ -769,25 +1535,77 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public Notification getNotification(UUID notificationID) throws IllegalStateException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        Notification returnNotification;
-
-        PreparedStatement userExistStatement = dbConnection.prepareStatement(GET_NOTIFICATION);
-        userExistStatement.setString(1, notificationID.toString());
-        ResultSet rs = userExistStatement.executeQuery();
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            Notification returnNotification;
+
+            PreparedStatement userExistStatement = dbConnection.prepareStatement(GET_NOTIFICATION);
+            userExistStatement.setObject(1, notificationID);
+            try (ResultSet rs = userExistStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results (notificationID not present)
+                    throw new IllegalArgumentException("ALERT: Specified notification does not exist");
+                } else {
+                    returnNotification = notificationFromResultSet(rs);
+                }
+                return returnNotification;
+            }
+        }
+    }
 
-        if (!rs.next()) { // rs.next() returns false when the query has no results (notificationID not present)
-            throw new IllegalArgumentException("ALERT: Specified notification does not exist");
-        } else {
-            UUID eventID = UUID.fromString(rs.getString("eventID"));
-            UUID recipientID = UUID.fromString(rs.getString("recipientID"));
-            boolean read = rs.getBoolean("read");
-            String title = rs.getString("title");
-            String content = rs.getString("content");
-            returnNotification = new Notification(notificationID, eventID, recipientID, read, title, content);
+    /**
+     * Returns a page of the notifications of a user, newest first.
+     * Pages are found through the position of the last notification seen instead of an offset,
+     * so every page costs the same no matter how deep into the inbox it is.
+     * @param userID UUID of the user whose notifications are needed
+     * @param cursor Last Notification of the previous page, null for the first page
+     * @param limit Maximum number of notifications returned
+     * @return ArrayList of Notification objects - empty if there are no more notifications
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws IllegalArgumentException If cursor was never stored in the database
+     * @throws SQLException If a database access error occurs
+     */
+    public ArrayList<Notification> getNotificationsPage(UUID userID, Notification cursor, int limit) throws IllegalStateException, IllegalArgumentException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+        if (cursor != null && cursor.getCreatedAt() == null)
+            throw new IllegalArgumentException("ALERT: Notification " + cursor.getNotificationID() + " can't be used as a cursor");
+
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            ArrayList<Notification> notifications = new ArrayList<>();
+            PreparedStatement notificationsPageStatement;
+            if (cursor == null) {
+                notificationsPageStatement = dbConnection.prepareStatement(GET_NOTIFICATIONS_FIRST_PAGE);
+                notificationsPageStatement.setObject(1, userID);
+                notificationsPageStatement.setInt(2, limit);
+            } else {
+                notificationsPageStatement = dbConnection.prepareStatement(GET_NOTIFICATIONS_NEXT_PAGE);
+                notificationsPageStatement.setObject(1, userID);
+                notificationsPageStatement.setObject(2, cursor.getCreatedAt()); // Postgresql driver natively supports LocalDateTime
+                notificationsPageStatement.setObject(3, cursor.getNotificationID());
+                notificationsPageStatement.setInt(4, limit);
+            }
+            try (ResultSet rs = notificationsPageStatement.executeQuery()) {
+                while (rs.next())
+                    notifications.add(notificationFromResultSet(rs));
+            }
+            return notifications;
         }
-        return returnNotification;
+    }
+
+    /**
+     * @param rs A ResultSet from eventNotifications already positioned on the row to read
+     * @return Notification - An object with all its fields filled as they are in the database
+     * @throws SQLException If a database access error occurs
+     */
+    private static Notification notificationFromResultSet(ResultSet rs) throws SQLException {
+        UUID notificationID = rs.getObject("notificationID", UUID.class);
+        UUID eventID = rs.getObject("eventID", UUID.class);
+        UUID recipientID = rs.getObject("recipientID", UUID.class);
+        boolean read = rs.getBoolean("read");
+        String title = rs.getString("title");
+        String content = rs.getString("content");
+        LocalDateTime createdAt = rs.getObject("created_at", LocalDateTime.class);
+        return new Notification(notificationID, eventID, recipientID, read, title, content, createdAt);
     }
 
     /**
@@ -799,113 +1617,240 @@ public class Connector {
      * @throws SQLException If a database access error occurs
      */
     public Event getEvent(UUID eventID) throws IllegalStateException, NoSuchElementException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        Event event;
-        EventFactory eFactory = new EventFactory();
-
-        String eventType = this.getEventType(eventID);
-        PreparedStatement eventStatement = dbConnection.prepareStatement(String.format(GET_EVENT, eventType)); // HACK!
-        // This is a workaround to allow searching in the proper subtable (ie: soccer_game inherits from default_event)
-        // Java PreparedStatements do not allow passing tables name, so this was the only solution that could save from inner joins
-        eventStatement.setString(1, eventID.toString());
-        ResultSet rs = eventStatement.executeQuery();
-
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: No event with UUID " + eventID.toString() + " in database");
-        } else {
-            UUID creatorID = UUID.fromString(rs.getString("creatorID"));
-            event = eFactory.createEvent(eventID, creatorID, eventType);
-
-            event.setPublished(rs.getBoolean("published"));
-
-            Array registeredUsersDbArray = rs.getArray("registeredUsers"); // Get a Sql.Array object from the database
-            String[] registeredUsers = (String[]) registeredUsersDbArray.getArray(); // Cast it to a Strings Array
-            for (String userID : registeredUsers) {
-                event.register(UUID.fromString(userID)); // Get UUID from String and add it to Event's array
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        Event cachedEvent = eventCache.get(eventID);
+        if (cachedEvent != null)
+            return cachedEvent;
+
+        long cacheStamp = eventCache.getStamp();
+        Event returnEvent;
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            String eventType = eventTypeCache.get(eventID);
+            if (eventType == null) { // Type and row are fetched together through the parent table
+                String query = getEventWithTypeQuery(dbConnection);
+                PreparedStatement eventStatement = dbConnection.prepareStatement(query);
+                eventStatement.setObject(1, eventID);
+                try (ResultSet rs = eventStatement.executeQuery()) {
+                    if (!rs.next()) { // rs.next() returns false when the query has no results
+                        throw new NoSuchElementException("ALERT: No event with UUID " + eventID.toString() + " in database");
+                    }
+                    eventType = rs.getString("eventTable");
+                    eventTypeCache.put(eventID, eventType);
+                    returnEvent = EventRowMapper.forType(eventType).map(rs, query, eventType + "_");
+                }
+                eventCache.put(returnEvent, cacheStamp);
+                return returnEvent;
             }
 
-            event.setCurrentState(rs.getString("currentState"));
+            String query = String.format(GET_EVENT, eventType);
+            PreparedStatement eventStatement = dbConnection.prepareStatement(query); // HACK!
+            // This is a workaround to allow searching in the proper subtable (ie: soccer_game inherits from default_event)
+            // Java PreparedStatements do not allow passing tables name, so this was the only solution that could save from inner joins
+            // Every per-table variant of the query gets its own entry in the connection's statement cache
+            eventStatement.setObject(1, eventID);
+            try (ResultSet rs = eventStatement.executeQuery()) {
+                if (!rs.next()) { // rs.next() returns false when the query has no results
+                    eventTypeCache.remove(eventID);
+                    throw new NoSuchElementException("ALERT: No event with UUID " + eventID.toString() + " in database");
+                }
+                returnEvent = EventRowMapper.forType(eventType).map(rs, query, "");
+            }
+        }
+        eventCache.put(returnEvent, cacheStamp);
+        return returnEvent;
+    }
 
-            event.setParticipantsMax(rs.getInt("participantsMax"));
+    /**
+     * Returns many Event objects at once, running a single query for each category the events belong to
+     * @param eventIDs UUIDs of the required events
+     * @return A LinkedHashMap with the UUID of the event as a key and the Event as value, in the same order of eventIDs.
+     *         Events which are not in the database are not present in the map.
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public LinkedHashMap<UUID, Event> getEvents(Collection<UUID> eventIDs) throws IllegalStateException, SQLException {
+        return getEvents(eventIDs, null);
+    }
 
-            LinkedHashMap<String, Class<?>> eventFieldsMap = event.getAttributesWithType();
+    /**
+     * Returns many Event objects at once, running a single query for each category the events belong to.
+     * Creators' usernames are fetched in the same queries, so that listings do not need to look them up one by one.
+     * @param eventIDs UUIDs of the required events
+     * @param creatorUsernames A Map that, if not null, is filled with creatorID - username pairs of returned events
+     * @return A LinkedHashMap with the UUID of the event as a key and the Event as value, in the same order of eventIDs.
+     *         Events which are not in the database are not present in the map.
+     * @throws IllegalStateException If called before a database connection is established
+     * @throws SQLException If a database access error occurs
+     */
+    public LinkedHashMap<UUID, Event> getEvents(Collection<UUID> eventIDs, Map<UUID, String> creatorUsernames) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        LinkedHashMap<UUID, Event> returnEvents = new LinkedHashMap<>();
+        if (eventIDs.isEmpty())
+            return returnEvents;
+
+        HashMap<UUID, Event> fetchedEvents = new HashMap<>();
+        HashSet<UUID> uncachedCreatorIDs = new HashSet<>();
+        ArrayList<UUID> uncachedEventIDs = new ArrayList<>();
+        for (UUID eventID : eventIDs) {
+            Event cachedEvent = eventCache.get(eventID);
+            if (cachedEvent == null) {
+                uncachedEventIDs.add(eventID);
+                continue;
+            }
+            fetchedEvents.put(eventID, cachedEvent);
+            if (creatorUsernames != null) { // Usernames come with the query, cached events need them from somewhere else
+                String creatorUsername = usernameCache.get(cachedEvent.getCreatorID());
+                if (creatorUsername != null)
+                    creatorUsernames.put(cachedEvent.getCreatorID(), creatorUsername);
+                else
+                    uncachedCreatorIDs.add(cachedEvent.getCreatorID());
+            }
+        }
 
-            Iterator iterator = eventFieldsMap.entrySet().iterator(); // Get an iterator for our map
+        long cacheStamp = eventCache.getStamp();
+        if (!uncachedEventIDs.isEmpty()) { // Otherwise no connection is needed
+            try (PooledConnection dbConnection = connectionPool.borrow()) {
+                LinkedHashMap<String, ArrayList<UUID>> eventIDsByType = new LinkedHashMap<>();
+                ArrayList<UUID> unknownTypeIDs = new ArrayList<>();
+                for (UUID eventID : uncachedEventIDs) {
+                    String eventType = eventTypeCache.get(eventID);
+                    if (eventType == null)
+                        unknownTypeIDs.add(eventID);
+                    else
+                        eventIDsByType.computeIfAbsent(eventType, k -> new ArrayList<>()).add(eventID);
+                }
 
-            while(iterator.hasNext()) {
-                Map.Entry entry = (Map.Entry)iterator.next(); // Casts the iterated item to a Map Entry to use it as such
+                if (!unknownTypeIDs.isEmpty()) { // Only events never seen before need a type lookup
+                    PreparedStatement eventTypesStatement = dbConnection.prepareStatement(GET_EVENT_TYPES);
+                    eventTypesStatement.setArray(1, dbConnection.createArrayOf("uuid", unknownTypeIDs.toArray(new UUID[0])));
+                    try (ResultSet rs = eventTypesStatement.executeQuery()) {
+                        while (rs.next()) {
+                            UUID eventID = rs.getObject("eventID", UUID.class);
+                            String eventType = rs.getString("eventType");
+                            eventTypeCache.put(eventID, eventType);
+                            eventIDsByType.computeIfAbsent(eventType, k -> new ArrayList<>()).add(eventID);
+                        }
+                    }
+                }
 
-                Object attributeValue = Connector.genericDBGetter(rs, (String)entry.getKey(), (Class)entry.getValue() );
-                if (attributeValue != null) {
-                    event.setAttribute((String) entry.getKey(), attributeValue);
+                for (Map.Entry<String, ArrayList<UUID>> typeEntry : eventIDsByType.entrySet()) {
+                    String eventType = typeEntry.getKey();
+                    String query = String.format(GET_EVENTS, eventType);
+                    EventRowMapper mapper = EventRowMapper.forType(eventType);
+                    PreparedStatement eventsStatement = dbConnection.prepareStatement(query); // Same HACK as getEvent
+                    eventsStatement.setArray(1, dbConnection.createArrayOf("uuid", typeEntry.getValue().toArray(new UUID[0])));
+                    try (ResultSet rs = eventsStatement.executeQuery()) {
+                        while (rs.next()) {
+                            Event event = mapper.map(rs, query, "");
+                            fetchedEvents.put(event.getEventID(), event);
+                            eventCache.put(event, cacheStamp);
+                            String creatorUsername = rs.getString("creatorUsername");
+                            if (creatorUsername != null) {
+                                usernameCache.put(event.getCreatorID(), creatorUsername);
+                                if (creatorUsernames != null)
+                                    creatorUsernames.put(event.getCreatorID(), creatorUsername);
+                            }
+                        }
+                    }
                 }
             }
         }
+        if (!uncachedCreatorIDs.isEmpty())
+            creatorUsernames.putAll(getUsernames(uncachedCreatorIDs));
 
-        return event;
+        for (UUID eventID : eventIDs) { // Restore caller's order
+            Event event = fetchedEvents.get(eventID);
+            if (event != null)
+                returnEvents.put(eventID, event);
+        }
+        return returnEvents;
     }
 
     /**
-     * Returns an Event's type given its UUID
-     * @param eventID UUID object with the UUID of the needed event
-     * @return String - Event's category as present in DB category list: ie. "soccer_game"
+     * Returns what listings show about many events, in a single query. Unlike getEvents no category table is read
+     * and registered users are only counted, so it is the right choice whenever full Event objects are not needed
+     * @param eventIDs UUIDs of the required events
+     * @return A LinkedHashMap with the UUID of the event as a key and its EventSummary as value, in the same order of eventIDs.
+     *         Events which are not in the database are not present in the map.
      * @throws IllegalStateException If called before a database connection is established
-     * @throws NoSuchElementException If the given UUID is not associated to any event in the database
      * @throws SQLException If a database access error occurs
      */
-    private String getEventType (UUID eventID) throws IllegalStateException, NoSuchElementException, SQLException {
-        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
-
-        String eventType;
-        PreparedStatement eventStatement = dbConnection.prepareStatement(GET_EVENT_TYPE);
-        eventStatement.setString(1, eventID.toString());
-        ResultSet rs = eventStatement.executeQuery();
-
-        if (!rs.next()) { // rs.next() returns false when the query has no results
-            throw new NoSuchElementException("ALERT: No event with UUID " + eventID.toString() + " in database");
-        } else {
-            eventType = rs.getString(1);
+    public LinkedHashMap<UUID, EventSummary> getEventSummaries(Collection<UUID> eventIDs) throws IllegalStateException, SQLException {
+        if (connectionPool == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        LinkedHashMap<UUID, EventSummary> returnSummaries = new LinkedHashMap<>();
+        if (eventIDs.isEmpty())
+            return returnSummaries;
+
+        HashMap<UUID, EventSummary> fetchedSummaries = new HashMap<>();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            PreparedStatement eventSummariesStatement = dbConnection.prepareStatement(GET_EVENT_SUMMARIES);
+            eventSummariesStatement.setArray(1, dbConnection.createArrayOf("uuid", eventIDs.toArray(new UUID[0])));
+            try (ResultSet rs = eventSummariesStatement.executeQuery()) {
+                while (rs.next()) {
+                    UUID eventID = rs.getObject("eventID", UUID.class);
+                    fetchedSummaries.put(eventID, new EventSummary(
+                            eventID,
+                            rs.getString("eventType"),
+                            rs.getString("title"),
+                            rs.getObject("creatorID", UUID.class),
+                            rs.getString("creatorUsername"),
+                            Event.State.valueOf(rs.getString("currentState")),
+                            rs.getObject("registrationDeadline", LocalDateTime.class),
+                            rs.getObject("startDate", LocalDateTime.class),
+                            rs.getInt("registeredCount")));
+                }
+            }
+        }
+        for (UUID eventID : eventIDs) { // Rows come back in no particular order
+            EventSummary summary = fetchedSummaries.get(eventID);
+            if (summary != null)
+                returnSummaries.put(eventID, summary);
         }
-        return eventType;
+        return returnSummaries;
     }
 
     /**
-     * Given a ResultSet object, column name and return type, this method chooses the right kind of database getter
-     * WARNING: return is null if the cell is NULL
-     * @param rs - A query ResultSet
-     * @param columnName - The name of the column to which the object should be extracted from
-     * @param type - The type of wanted object
-     * @return A generic T which contains user input and HAS to be cast to the right type - WARNING: can be null!
+     * Returns the query that reads an event from default_event together with the name of the subtable it lives in.
+     * Every subtable is LEFT JOINed and its own columns are renamed as "eventType_column" (ie: "soccer_game_gender"),
+     * so that the whole event is fetched in a single round trip even when its type is not known yet.
+     * @param dbConnection Connection already borrowed by the caller
+     * @return String - SQL query with the eventID as the only parameter
      * @throws SQLException If a database access error occurs
      */
-    private static <T> T genericDBGetter(ResultSet rs, String columnName, Class type) throws SQLException {
-        if (type.equals(Integer.class)) {
-            return (T) (Integer)rs.getInt(columnName);
-        } else if (type.equals(Double.class)) {
-            return (T) (Double)rs.getDouble(columnName);
-        } else if (type.equals(String.class)) {
-            return (T) rs.getString(columnName);
-        } else if (type.equals(LocalDateTime.class)) {
-            return (T) rs.getObject(columnName, LocalDateTime.class);
-        } else if (type.equals(Duration.class)) {
-            int seconds = rs.getInt(columnName);
-            if (seconds == 0) {
-                return null; // Just for a matter of consistency
-            }
-            return (T) Duration.of(seconds, ChronoUnit.SECONDS);
-        } else if (type.equals(Sex.class)) {
-            return (T) new Sex(rs.getString(columnName));
-        } else if (type.equals(OptionalCost.class)) {
-            String optionalCostIDString = rs.getString(columnName + "ID");
-            if (optionalCostIDString == null) {
-                return null; // Just for a matter of consistency
-            }
-            UUID costID = UUID.fromString(optionalCostIDString);
-            Integer costAmount = rs.getInt(columnName + "Amount");
-            return (T) new OptionalCost(costID, costAmount);
-        } else {
-            throw new IllegalArgumentException("ALERT: Unexpected input type: " + type);
+    private String getEventWithTypeQuery(PooledConnection dbConnection) throws SQLException {
+        String query = eventWithTypeQuery;
+        if (query != null)
+            return query;
+
+        EventFactory eFactory = new EventFactory();
+        StringBuilder columns = new StringBuilder();
+        StringBuilder joins = new StringBuilder();
+        PreparedStatement categoriesStatement = dbConnection.prepareStatement(GET_CATEGORIES_LIST);
+        try (ResultSet rs = categoriesStatement.executeQuery()) {
+            for (int t = 0; rs.next(); t++) {
+                String eventType = rs.getString(1);
+                Event dummyEvent;
+                try {
+                    dummyEvent = eFactory.createEvent(eventType);
+                } catch (IllegalArgumentException e) {
+                    continue; // A category this version of the software can't handle anyway
+                }
+                String alias = "t" + t;
+                for (AttributeTable.Attribute attribute : dummyEvent.getAttributeTable()) {
+                    if (attribute.getDeclaringClass().equals(Event.class))
+                        continue; // Already in d.*
+                    for (String column : ColumnType.of(attribute.getType()).columnNames(attribute.getName())) // OptionalCost objects have 2 columns
+                        columns.append(", ").append(alias).append('.').append(column).append(" AS ").append(eventType).append('_').append(column);
+                }
+                joins.append(" LEFT JOIN ONLY public.").append(eventType).append(' ').append(alias)
+                        .append(" ON ").append(alias).append(".eventID = d.eventID");
+            }
         }
+        query = String.format(GET_EVENT_WITH_TYPE, columns, joins);
+        eventWithTypeQuery = query;
+        return query;
     }
 }
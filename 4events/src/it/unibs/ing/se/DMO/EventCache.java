@@ -0,0 +1,149 @@
+package it.unibs.ing.se.DMO;
+
+import it.unibs.ing.se.model.Event;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In memory copy of recently read events, kept by Connector so that the same event is not read again and again
+ * within a single user action. Connector invalidates an event on every write that changes it; changes made by
+ * other instances of the software are not seen here, so every entry is trusted only for ttlMillis after it has been read.
+ * Events are copied on the way in and on the way out, callers are free to change what they get.
+ */
+public class EventCache {
+    private static class CachedEvent {
+        private final Event event;
+        private final long loadedMillis;
+
+        private CachedEvent(Event event) {
+            this.event = event;
+            this.loadedMillis = System.currentTimeMillis();
+        }
+    }
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final LinkedHashMap<UUID, CachedEvent> entries;
+    private long invalidations = 0; // Incremented by every write, see getStamp
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0; // Entries dropped because the cache was full or they expired
+
+    /**
+     * @param capacity Maximum number of events kept in memory
+     * @param ttlMillis Time after which an event has to be read again from the database
+     * @throws IllegalArgumentException If capacity or ttlMillis are not positive
+     */
+    EventCache(int capacity, long ttlMillis) throws IllegalArgumentException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("ALERT: Illegal cache capacity " + capacity);
+        if (ttlMillis <= 0)
+            throw new IllegalArgumentException("ALERT: Illegal cache TTL " + ttlMillis);
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<UUID, CachedEvent>(16, 0.75f, true) { // Access order makes it an LRU
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedEvent> eldest) {
+                if (size() <= EventCache.this.capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param eventID UUID of the event
+     * @return A copy of the cached event, null if it has to be read from the database
+     */
+    synchronized Event get(UUID eventID) {
+        CachedEvent entry = entries.get(eventID);
+        if (entry != null && System.currentTimeMillis() - entry.loadedMillis > ttlMillis) {
+            entries.remove(eventID);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.event.copy();
+    }
+
+    /**
+     * To be read before querying the database for events that will be cached, and passed to put
+     * @return A value that changes whenever an event is invalidated
+     */
+    synchronized long getStamp() {
+        return invalidations;
+    }
+
+    /**
+     * Caches an event just read from the database, unless any event was invalidated since the read started:
+     * the event may have been read before a write was committed, and would then be cached stale
+     * @param event The Event read from the database
+     * @param stamp Value returned by getStamp before the read
+     */
+    synchronized void put(Event event, long stamp) {
+        if (stamp == invalidations)
+            entries.put(event.getEventID(), new CachedEvent(event.copy()));
+    }
+
+    /**
+     * Forgets an event, so that it is read again from the database
+     * @param eventID UUID of the event
+     */
+    synchronized void invalidate(UUID eventID) {
+        invalidations++;
+        entries.remove(eventID);
+    }
+
+    /**
+     * Forgets many events at once, see invalidate
+     * @param eventIDs UUIDs of the events
+     */
+    synchronized void invalidateAll(Iterable<UUID> eventIDs) {
+        invalidations++;
+        for (UUID eventID : eventIDs)
+            entries.remove(eventID);
+    }
+
+    synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized int getSize() { return entries.size(); }
+
+    public int getCapacity() { return capacity; }
+
+    public long getTtlMillis() { return ttlMillis; }
+
+    public synchronized long getHitCount() { return hits; }
+
+    public synchronized long getMissCount() { return misses; }
+
+    public synchronized long getEvictionCount() { return evictions; }
+
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EventCache{" +
+                "size=" + entries.size() +
+                ", capacity=" + capacity +
+                ", ttl=" + ttlMillis + "ms" +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                String.format(", hitRatio=%.3f", getHitRatio()) +
+                '}';
+    }
+}
@@ -0,0 +1,34 @@
+package it.unibs.ing.se.DMO;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Position between two pages of Connector.findOpenEvents, given by the sort key of the event at the page boundary.
+ * Pages are read from the position on, so they stay consistent while events are added or removed.
+ * Instances are returned in an EventPage, to ask for the page after or before it.
+ */
+public class EventCursor {
+    private final EventSort sort;
+    private final LocalDateTime sortValue;
+    private final UUID eventID;
+    private final boolean backward;
+
+    EventCursor(EventSort sort, LocalDateTime sortValue, UUID eventID, boolean backward) {
+        this.sort = sort;
+        this.sortValue = sortValue;
+        this.eventID = eventID;
+        this.backward = backward;
+    }
+
+    EventSort getSort() { return sort; }
+
+    LocalDateTime getSortValue() { return sortValue; }
+
+    UUID getEventID() { return eventID; }
+
+    /**
+     * @return True if the cursor points to the events before the boundary, false to the ones after it
+     */
+    boolean isBackward() { return backward; }
+}
@@ -0,0 +1,57 @@
+package it.unibs.ing.se.DMO;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conditions events listed by Connector.findOpenEvents have to satisfy. A null field means no condition on it.
+ */
+public class EventFilter {
+    private String eventType;
+    private LocalDateTime startFrom;
+    private LocalDateTime startTo;
+    private String location;
+    private Double maxCost;
+    private Integer minFreeSpots;
+
+    public String getEventType() { return eventType; }
+
+    /**
+     * @param eventType String eventType as present in the database (e.g. "soccer_game")
+     */
+    public void setEventType(String eventType) { this.eventType = eventType; }
+
+    public LocalDateTime getStartFrom() { return startFrom; }
+
+    /**
+     * @param startFrom Earliest start date, included
+     */
+    public void setStartFrom(LocalDateTime startFrom) { this.startFrom = startFrom; }
+
+    public LocalDateTime getStartTo() { return startTo; }
+
+    /**
+     * @param startTo Latest start date, included
+     */
+    public void setStartTo(LocalDateTime startTo) { this.startTo = startTo; }
+
+    public String getLocation() { return location; }
+
+    /**
+     * @param location Text the location has to contain, case insensitive
+     */
+    public void setLocation(String location) { this.location = location; }
+
+    public Double getMaxCost() { return maxCost; }
+
+    /**
+     * @param maxCost Highest base cost, included. Optional costs are not considered
+     */
+    public void setMaxCost(Double maxCost) { this.maxCost = maxCost; }
+
+    public Integer getMinFreeSpots() { return minFreeSpots; }
+
+    /**
+     * @param minFreeSpots Number of spots that still have to be free before participantsMax is reached
+     */
+    public void setMinFreeSpots(Integer minFreeSpots) { this.minFreeSpots = minFreeSpots; }
+}
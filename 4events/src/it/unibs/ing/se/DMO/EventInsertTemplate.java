@@ -0,0 +1,102 @@
+package it.unibs.ing.se.DMO;
+
+import it.unibs.ing.se.model.AttributeTable;
+import it.unibs.ing.se.model.Event;
+import it.unibs.ing.se.model.EventFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * INSERT statement for events of a given type, covering every column of the category table.
+ * The SQL text and the parameter index of each attribute are computed once per type, so that inserting an event only
+ * binds values: missing attributes are bound as explicit NULLs instead of being left out of the column list.
+ */
+class EventInsertTemplate {
+    private final static ConcurrentHashMap<String, EventInsertTemplate> TEMPLATES = new ConcurrentHashMap<>();
+    // Private Event fields, common to all categories, bound in this order as parameters 1 to 8. Registered users have their own table
+    private final static String COMMON_COLUMNS = "eventID, creatorID, eventType, published, currentState, participantsMax, registeredCount, version";
+    private final static int COMMON_COLUMNS_COUNT = 8;
+
+    private static class Binder {
+        private final AttributeTable.Attribute descriptor;
+        private final ColumnType columnType;
+        private final int parameterIndex; // Index of its first placeholder in the statement
+
+        private Binder(AttributeTable.Attribute descriptor, ColumnType columnType, int parameterIndex) {
+            this.descriptor = descriptor;
+            this.columnType = columnType;
+            this.parameterIndex = parameterIndex;
+        }
+    }
+
+    private final String eventType;
+    private final String sql;
+    private final Binder[] binders;
+
+    private EventInsertTemplate(String eventType) {
+        this.eventType = eventType;
+        AttributeTable attributeTable = new EventFactory().createEvent(eventType).getAttributeTable();
+
+        StringBuilder columns = new StringBuilder(COMMON_COLUMNS);
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 1; i < COMMON_COLUMNS_COUNT; i++)
+            placeholders.append(", ?");
+
+        this.binders = new Binder[attributeTable.size()];
+        int parameterIndex = COMMON_COLUMNS_COUNT + 1;
+        for (int i = 0; i < binders.length; i++) {
+            AttributeTable.Attribute descriptor = attributeTable.get(i);
+            ColumnType columnType = ColumnType.of(descriptor.getType());
+            binders[i] = new Binder(descriptor, columnType, parameterIndex);
+            for (String columnName : columnType.columnNames(descriptor.getName())) {
+                columns.append(", ").append(columnName);
+                placeholders.append(", ?");
+            }
+            parameterIndex += columnType.width();
+        }
+        this.sql = "INSERT INTO public." + eventType + " (" + columns + ") VALUES (" + placeholders + ")";
+    }
+
+    /**
+     * @param eventType String eventType as present in the database (e.g. "soccer_game")
+     * @return The template for events of that type, built on first use
+     * @throws IllegalArgumentException If eventType isn't a known type
+     */
+    static EventInsertTemplate forType(String eventType) throws IllegalArgumentException {
+        EventInsertTemplate template = TEMPLATES.get(eventType);
+        if (template == null)
+            template = TEMPLATES.computeIfAbsent(eventType, EventInsertTemplate::new);
+        return template;
+    }
+
+    /**
+     * @return SQL text of the INSERT statement, to be prepared once per connection
+     */
+    String getSql() { return sql; }
+
+    /**
+     * Sets every parameter of a statement prepared from getSql to the values of an event
+     * @param statement PreparedStatement to fill
+     * @param event Event of this template's type
+     * @throws IllegalArgumentException If the event is of a different type
+     * @throws SQLException If a database access error occurs
+     */
+    void bind(PreparedStatement statement, Event event) throws IllegalArgumentException, SQLException {
+        if (!eventType.equals(event.getEventType()))
+            throw new IllegalArgumentException("ALERT: Expected an event of type " + eventType + ", got " + event.getEventType());
+
+        statement.setObject(1, event.getEventID()); // Event private fields here - eventID
+        statement.setObject(2, event.getCreatorID()); // creatorID
+        statement.setString(3, event.getEventType()); // eventType
+        statement.setBoolean(4, event.isPublished()); // published
+        statement.setString(5, event.getCurrentStateAsString()); // currentState
+        statement.setInt(6, event.getParticipantsMax()); // participantsMax
+        statement.setInt(7, event.registeredUsersCount()); // registeredCount, rows are added by the caller in the same transaction
+        statement.setInt(8, event.getVersion()); // version
+
+        for (Binder binder : binders)
+            binder.columnType.bind(statement, binder.parameterIndex, binder.descriptor.get(event));
+    }
+}
@@ -0,0 +1,34 @@
+package it.unibs.ing.se.DMO;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * A page of events returned by Connector.findOpenEvents, with the cursors to the pages next to it.
+ */
+public class EventPage {
+    private final ArrayList<UUID> eventIDs;
+    private final EventCursor nextCursor;
+    private final EventCursor previousCursor;
+
+    EventPage(ArrayList<UUID> eventIDs, EventCursor nextCursor, EventCursor previousCursor) {
+        this.eventIDs = eventIDs;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    /**
+     * @return UUIDs of the events in this page, in the requested order - can be 0 elements long
+     */
+    public ArrayList<UUID> getEventIDs() { return eventIDs; }
+
+    /**
+     * @return EventCursor to the following page, null if this is the last one
+     */
+    public EventCursor getNextCursor() { return nextCursor; }
+
+    /**
+     * @return EventCursor to the preceding page, null if this is the first one
+     */
+    public EventCursor getPreviousCursor() { return previousCursor; }
+}
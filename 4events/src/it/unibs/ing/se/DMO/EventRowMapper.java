@@ -0,0 +1,140 @@
+package it.unibs.ing.se.DMO;
+
+import it.unibs.ing.se.model.AttributeTable;
+import it.unibs.ing.se.model.Event;
+import it.unibs.ing.se.model.EventFactory;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds Event objects of a given type from database rows.
+ * Attributes and their setters come from the AttributeTable of the event class, while column indexes are resolved once
+ * per query, so that decoding a row needs neither reflection nor lookups by column name.
+ */
+class EventRowMapper {
+    private final static ConcurrentHashMap<String, EventRowMapper> MAPPERS = new ConcurrentHashMap<>();
+    // Private Event fields, common to all categories, in the order of their slots
+    private final static String[] COMMON_COLUMNS = {"eventID", "creatorID", "published", "registeredUsers", "currentState", "participantsMax", "version"};
+
+    private static class Attribute {
+        private final AttributeTable.Attribute descriptor;
+        private final ColumnType columnType;
+        private final boolean common; // True if the attribute is declared in Event, so it never gets a column prefix
+        private final int slot; // Index of its first column in the resolved indexes array
+
+        private Attribute(AttributeTable.Attribute descriptor, int slot) {
+            this.descriptor = descriptor;
+            this.columnType = ColumnType.of(descriptor.getType());
+            this.common = descriptor.getDeclaringClass().equals(Event.class);
+            this.slot = slot;
+        }
+    }
+
+    private final String eventType;
+    private final Attribute[] attributes;
+    private final int columnsCount;
+    private final ConcurrentHashMap<String, int[]> columnIndexesByQuery = new ConcurrentHashMap<>();
+
+    private EventRowMapper(String eventType) {
+        this.eventType = eventType;
+        AttributeTable attributeTable = new EventFactory().createEvent(eventType).getAttributeTable();
+
+        this.attributes = new Attribute[attributeTable.size()];
+        int slot = COMMON_COLUMNS.length;
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = new Attribute(attributeTable.get(i), slot);
+            slot += attributes[i].columnType.width();
+        }
+        this.columnsCount = slot;
+    }
+
+    /**
+     * @param eventType String eventType as present in the database (e.g. "soccer_game")
+     * @return The mapper for events of that type, built on first use
+     * @throws IllegalArgumentException If eventType isn't a known type
+     */
+    static EventRowMapper forType(String eventType) throws IllegalArgumentException {
+        EventRowMapper mapper = MAPPERS.get(eventType);
+        if (mapper == null)
+            mapper = MAPPERS.computeIfAbsent(eventType, EventRowMapper::new);
+        return mapper;
+    }
+
+    /**
+     * Builds an Event object from the current row of a ResultSet
+     * @param rs A ResultSet already positioned on the row to read
+     * @param queryKey String that identifies the query rs comes from (i.e. its SQL text): rows of the same query share column indexes
+     * @param columnPrefix Prefix of the columns holding category specific attributes, empty if they keep their own name
+     * @return Event - An object with all its fields filled as they are in the database
+     * @throws SQLException If a database access error occurs or a column is missing from rs
+     */
+    Event map(ResultSet rs, String queryKey, String columnPrefix) throws SQLException {
+        int[] columnIndexes = columnIndexesByQuery.get(queryKey);
+        if (columnIndexes == null) {
+            columnIndexes = resolveColumnIndexes(rs.getMetaData(), columnPrefix);
+            columnIndexesByQuery.put(queryKey, columnIndexes);
+        }
+
+        UUID eventID = rs.getObject(columnIndexes[0], UUID.class);
+        UUID creatorID = rs.getObject(columnIndexes[1], UUID.class);
+        Event event = new EventFactory().createEvent(eventID, creatorID, eventType);
+
+        event.setPublished(rs.getBoolean(columnIndexes[2]));
+
+        Array registeredUsersDbArray = rs.getArray(columnIndexes[3]); // Get a Sql.Array object from the database
+        UUID[] registeredUsers = (UUID[]) registeredUsersDbArray.getArray(); // The driver decodes uuid[] to UUIDs
+        for (UUID userID : registeredUsers) {
+            event.register(userID);
+        }
+
+        event.setCurrentState(rs.getString(columnIndexes[4]));
+
+        event.setParticipantsMax(rs.getInt(columnIndexes[5]));
+
+        event.setVersion(rs.getInt(columnIndexes[6]));
+
+        for (Attribute attribute : attributes) {
+            Object attributeValue = attribute.columnType.read(rs, columnIndexes, attribute.slot);
+            if (attributeValue != null)
+                attribute.descriptor.set(event, attributeValue);
+        }
+        return event;
+    }
+
+    /**
+     * Finds where every column needed by this mapper is in a ResultSet
+     * @param metaData Metadata of the ResultSet
+     * @param columnPrefix Prefix of the columns holding category specific attributes, empty if they keep their own name
+     * @return Array with the index of each column, in slot order
+     * @throws SQLException If a database access error occurs or a column is missing
+     */
+    private int[] resolveColumnIndexes(ResultSetMetaData metaData, String columnPrefix) throws SQLException {
+        HashMap<String, Integer> indexByLabel = new HashMap<>();
+        for (int i = metaData.getColumnCount(); i >= 1; i--) // Backwards, so that the first of duplicated labels wins
+            indexByLabel.put(metaData.getColumnLabel(i).toLowerCase(), i);
+
+        int[] columnIndexes = new int[columnsCount];
+        for (int i = 0; i < COMMON_COLUMNS.length; i++)
+            columnIndexes[i] = indexOf(indexByLabel, COMMON_COLUMNS[i]);
+        for (Attribute attribute : attributes) {
+            String name = attribute.descriptor.getName();
+            String[] columnNames = attribute.columnType.columnNames(attribute.common ? name : columnPrefix + name);
+            for (int i = 0; i < columnNames.length; i++)
+                columnIndexes[attribute.slot + i] = indexOf(indexByLabel, columnNames[i]);
+        }
+        return columnIndexes;
+    }
+
+    private static int indexOf(HashMap<String, Integer> indexByLabel, String columnName) throws SQLException {
+        Integer index = indexByLabel.get(columnName.toLowerCase()); // Postgres folds unquoted names to lower case
+        if (index == null)
+            throw new SQLException("ALERT: Column " + columnName + " missing from query result");
+        return index;
+    }
+}
@@ -0,0 +1,21 @@
+package it.unibs.ing.se.DMO;
+
+/**
+ * Orders in which Connector.findOpenEvents can list events, earliest first.
+ * Every order is on a timestamp column with eventID as tie breaker, so that pages can be walked with an EventCursor.
+ */
+public enum EventSort {
+    START_DATE("startDate"),
+    REGISTRATION_DEADLINE("registrationDeadline");
+
+    private final String columnName;
+
+    EventSort(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * @return Name of the default_event column events are sorted by
+     */
+    String getColumnName() { return columnName; }
+}
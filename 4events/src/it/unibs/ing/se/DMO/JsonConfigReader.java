@@ -40,4 +40,36 @@ public class JsonConfigReader {
     public String getDBUser () throws JSONException {
         return jsonContent.getString("db_username");
     }
+
+    /**
+     * @param defaultSize Value returned if the setting is not present in the configuration
+     * @return Number of database connections that are always kept open
+     */
+    public int getDBPoolMinSize (int defaultSize) {
+        return jsonContent.optInt("db_pool_min_size", defaultSize);
+    }
+
+    /**
+     * @param defaultSize Value returned if the setting is not present in the configuration
+     * @return Maximum number of database connections used at the same time
+     */
+    public int getDBPoolMaxSize (int defaultSize) {
+        return jsonContent.optInt("db_pool_max_size", defaultSize);
+    }
+
+    /**
+     * @param defaultValue Value returned if the setting is not present in the configuration
+     * @return True if events have to be updated in background at startup, without waiting for them before login
+     */
+    public boolean isFastStart (boolean defaultValue) {
+        return jsonContent.optBoolean("fast_start", defaultValue);
+    }
+
+    /**
+     * @param defaultValue Value returned if the setting is not present in the configuration
+     * @return True if pending schema migrations have to be applied at startup
+     */
+    public boolean isAutoMigrate (boolean defaultValue) {
+        return jsonContent.optBoolean("auto_migrate", defaultValue);
+    }
 }
@@ -16,7 +16,7 @@ import java.nio.file.Paths;
 public class JsonTranslator {
     private static final String JSON_PATH = "res/IT.json";
     private JSONObject jsonContent;
-    private static JsonTranslator singleInstance;
+    private static volatile JsonTranslator singleInstance;
 
     /**
      * Instantiate a jsonTranslator object with translation json file
@@ -49,9 +49,12 @@ public class JsonTranslator {
      * @return JsonTranslator instance
      */
     public static JsonTranslator getInstance() {
-        if (singleInstance == null)
-            singleInstance = new JsonTranslator();
-
+        if (singleInstance == null) {
+            synchronized (JsonTranslator.class) { // Startup loads it from more than one thread
+                if (singleInstance == null)
+                    singleInstance = new JsonTranslator();
+            }
+        }
         return singleInstance;
     }
 
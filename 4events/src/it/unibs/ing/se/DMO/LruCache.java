@@ -0,0 +1,56 @@
+package it.unibs.ing.se.DMO;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe map with a maximum size: once full, the least recently used entry is dropped to make room.
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+class LruCache<K, V> {
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+
+    /**
+     * @param capacity Maximum number of entries kept in memory
+     * @throws IllegalArgumentException If capacity is not positive
+     */
+    LruCache(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("ALERT: Illegal cache capacity " + capacity);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) { // Access order makes it an LRU
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key The key to look for
+     * @return The value associated to key, null if it is not cached
+     */
+    synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    int getCapacity() { return capacity; }
+}
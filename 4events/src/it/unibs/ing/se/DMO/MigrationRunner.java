@@ -0,0 +1,156 @@
+package it.unibs.ing.se.DMO;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings the database schema up to date, applying in order the SQL migrations found in a directory.
+ * A migration is a file named V&lt;version&gt;__&lt;description&gt;.sql: every one is applied once, in its own transaction,
+ * and recorded in the schema_version table together with a checksum of its content.
+ * Concurrent runners (i.e. two instances of the program starting together) wait for each other on an advisory lock.
+ */
+public class MigrationRunner {
+    private final static Pattern MIGRATION_FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private final static long MIGRATION_LOCK_KEY = 0x4e76656e7473L; // Any constant, shared by all the instances of the program
+    private final static String CREATE_SCHEMA_VERSION = "CREATE TABLE IF NOT EXISTS public.schema_version (" +
+            "version integer NOT NULL, description text NOT NULL, checksum character(32) NOT NULL, " +
+            "applied_at timestamp without time zone NOT NULL DEFAULT now(), CONSTRAINT schema_version_pkey PRIMARY KEY (version))";
+    private final static String LOCK_MIGRATIONS = "SELECT pg_advisory_xact_lock(?)";
+    private final static String GET_APPLIED_MIGRATIONS = "SELECT version, checksum FROM public.schema_version";
+    private final static String INSERT_SCHEMA_VERSION = "INSERT INTO public.schema_version (version, description, checksum) VALUES (?, ?, ?)";
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String sql;
+        private final String checksum;
+
+        private Migration(int version, String description, String sql) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            this.checksum = md5(sql);
+        }
+    }
+
+    private final ConnectionPool connectionPool;
+    private final Path migrationsPath;
+
+    /**
+     * @param connector Connector instance, already connected
+     * @param migrationsPath Directory with the migration files
+     * @throws IllegalStateException If called before a database connection is established
+     */
+    public MigrationRunner(Connector connector, Path migrationsPath) throws IllegalStateException {
+        this.connectionPool = connector.getConnectionPool();
+        this.migrationsPath = migrationsPath;
+    }
+
+    /**
+     * Applies every migration not yet recorded in schema_version, lowest version first
+     * @return The number of applied migrations, 0 if the schema was already up to date
+     * @throws IllegalStateException If an applied migration has been changed since, or two files have the same version
+     * @throws IOException If the migration files can't be read
+     * @throws SQLException If a database access error occurs. The failed migration is rolled back, the previous ones are kept
+     */
+    public int migrate() throws IllegalStateException, IOException, SQLException {
+        ArrayList<Migration> migrations = readMigrations();
+        try (PooledConnection dbConnection = connectionPool.borrow()) {
+            dbConnection.prepareStatement(CREATE_SCHEMA_VERSION).executeUpdate();
+
+            int applied = 0;
+            for (Migration migration : migrations) {
+                dbConnection.setAutoCommit(false);
+                PreparedStatement lockStatement = dbConnection.prepareStatement(LOCK_MIGRATIONS);
+                lockStatement.setLong(1, MIGRATION_LOCK_KEY);
+                lockStatement.executeQuery().close(); // Held until commit, read applied migrations only after getting it
+
+                String appliedChecksum = getAppliedMigrations(dbConnection).get(migration.version);
+                if (appliedChecksum != null) {
+                    dbConnection.commit();
+                    if (!appliedChecksum.equals(migration.checksum))
+                        throw new IllegalStateException("ALERT: Migration " + migration.version + " has been changed after being applied");
+                    continue;
+                }
+
+                try (Statement migrationStatement = dbConnection.createStatement()) {
+                    migrationStatement.execute(migration.sql);
+                }
+                PreparedStatement insertSchemaVersionStatement = dbConnection.prepareStatement(INSERT_SCHEMA_VERSION);
+                insertSchemaVersionStatement.setInt(1, migration.version);
+                insertSchemaVersionStatement.setString(2, migration.description);
+                insertSchemaVersionStatement.setString(3, migration.checksum);
+                insertSchemaVersionStatement.executeUpdate();
+                dbConnection.commit();
+                applied++;
+            }
+            return applied;
+        }
+    }
+
+    /**
+     * @param dbConnection Connection already borrowed by the caller
+     * @return A HashMap with the version of every applied migration as a key and its checksum as value
+     * @throws SQLException If a database access error occurs
+     */
+    private static HashMap<Integer, String> getAppliedMigrations(PooledConnection dbConnection) throws SQLException {
+        HashMap<Integer, String> appliedMigrations = new HashMap<>();
+        try (ResultSet rs = dbConnection.prepareStatement(GET_APPLIED_MIGRATIONS).executeQuery()) {
+            while (rs.next())
+                appliedMigrations.put(rs.getInt(1), rs.getString(2));
+        }
+        return appliedMigrations;
+    }
+
+    /**
+     * @return All the migrations in migrationsPath, sorted by version. Files with other names are ignored
+     * @throws IllegalStateException If two files have the same version
+     * @throws IOException If the migration files can't be read
+     */
+    private ArrayList<Migration> readMigrations() throws IllegalStateException, IOException {
+        ArrayList<Migration> migrations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(migrationsPath, "*.sql")) {
+            for (Path file : files) {
+                Matcher matcher = MIGRATION_FILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches())
+                    continue;
+                String sql = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2), sql));
+            }
+        }
+        migrations.sort(Comparator.comparingInt(migration -> migration.version));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version == migrations.get(i - 1).version)
+                throw new IllegalStateException("ALERT: More than one migration with version " + migrations.get(i).version);
+        }
+        return migrations;
+    }
+
+    /**
+     * @param text String to hash
+     * @return Hexadecimal MD5 of text, 32 characters long
+     */
+    private static String md5(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+            return String.format("%032x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("ALERT: MD5 is not available", e); // Every Java platform is required to support it
+        }
+    }
+}
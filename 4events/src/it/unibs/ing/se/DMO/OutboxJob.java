@@ -0,0 +1,46 @@
+package it.unibs.ing.se.DMO;
+
+import it.unibs.ing.se.model.Event;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * A notification fan-out waiting in the outbox, recorded together with the state change it comes from
+ * and with the users registered to the event at that moment.
+ */
+public class OutboxJob {
+    private final UUID eventID;
+    private final int version;
+    private final Event.State state;
+    private final ArrayList<UUID> recipients;
+
+    OutboxJob(UUID eventID, int version, Event.State state, ArrayList<UUID> recipients) {
+        this.eventID = eventID;
+        this.version = version;
+        this.state = state;
+        this.recipients = recipients;
+    }
+
+    public UUID getEventID() { return eventID; }
+
+    /**
+     * @return Version the event reached with the state change
+     */
+    public int getVersion() { return version; }
+
+    /**
+     * @return State the event reached, the one users have to be notified about
+     */
+    public Event.State getState() { return state; }
+
+    /**
+     * @return Users registered to the event when it reached the state, null for jobs queued before the outbox stored them
+     */
+    public ArrayList<UUID> getRecipients() { return recipients; }
+
+    /**
+     * @return A key that is the same every time this fan-out is retried, to derive notification IDs from
+     */
+    public String getIdempotencyKey() { return eventID + "/" + version; }
+}
@@ -0,0 +1,153 @@
+package it.unibs.ing.se.DMO;
+
+import java.sql.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A database connection owned by a ConnectionPool.
+ * Closing it gives the underlying connection back to the pool instead of closing it.
+ * PreparedStatements are cached per connection, so each query is parsed and planned only once.
+ */
+class PooledConnection implements AutoCloseable {
+    private final static int STATEMENT_CACHE_SIZE = 64;
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statementCache; // SQL text -> statement, least recently used first
+    private volatile long lastUsedMillis;
+    private boolean borrowed;
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.lastUsedMillis = System.currentTimeMillis();
+        this.statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) { // Access order makes it an LRU
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE)
+                    return false;
+                closeStatement(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a PreparedStatement for the given SQL text, reusing the one already prepared on this connection if any.
+     * WARNING: the statement is owned by the cache and MUST NOT be closed by the caller, while its ResultSets must be.
+     * @param sql SQL text of the statement, also used as cache key
+     * @return A PreparedStatement with no parameters set
+     * @throws SQLException Directly from SQL driver if something else bad happens
+     */
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement statement = statementCache.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statementCache.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Creates a plain Statement, i.e. for SQL scripts made of many statements. Unlike prepareStatement it is not cached
+     * @return A new Statement, which the caller MUST close
+     * @throws SQLException Directly from SQL driver if something else bad happens
+     */
+    Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        return connection.createArrayOf(typeName, elements);
+    }
+
+    void setAutoCommit(boolean autoCommit) throws SQLException {
+        connection.setAutoCommit(autoCommit);
+    }
+
+    void commit() throws SQLException {
+        connection.commit();
+    }
+
+    void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    /**
+     * Gives access to driver specific APIs, such as PostgreSQL COPY
+     * @param iface Interface implemented by the physical connection
+     * @return The physical connection as iface. It MUST NOT be closed nor kept after this PooledConnection is closed
+     * @throws SQLException If the physical connection does not implement iface
+     */
+    <T> T unwrap(Class<T> iface) throws SQLException {
+        return connection.unwrap(iface);
+    }
+
+    /**
+     * Gives this connection back to its pool, which rolls back any transaction left uncommitted (see reset).
+     * Callers that disable autocommit need no rollback of their own when something goes wrong before commit
+     */
+    @Override
+    public void close() {
+        if (!borrowed) return; // Closing twice must not release twice
+        borrowed = false;
+        lastUsedMillis = System.currentTimeMillis();
+        pool.release(this);
+    }
+
+    void lease() { borrowed = true; }
+
+    long idleMillis() { return System.currentTimeMillis() - lastUsedMillis; }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Brings the connection back to autocommit mode, rolling back anything left uncommitted by a failed transaction
+     * @return False if the connection is broken and has to be discarded
+     */
+    boolean reset() {
+        try {
+            if (connection.isClosed()) return false;
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closePhysical() {
+        Iterator<PreparedStatement> iterator = statementCache.values().iterator();
+        while (iterator.hasNext()) {
+            closeStatement(iterator.next());
+            iterator.remove();
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.out.println("ALERT: Error closing database connection!");
+            e.printStackTrace();
+        }
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println("ALERT: Error closing prepared statement!");
+            e.printStackTrace();
+        }
+    }
+}
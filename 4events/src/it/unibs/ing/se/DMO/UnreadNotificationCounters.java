@@ -0,0 +1,118 @@
+package it.unibs.ing.se.DMO;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory count of unread notifications per user, kept up to date by Connector on every insert and read mark.
+ * There is no background reconciliation: notifications written by other instances of the software are not seen here,
+ * so every counter expires RECONCILE_INTERVAL_MILLIS after it has been read from the database, and is then read again.
+ * A count read from the database while notifications were changing is not stored: every write is wrapped in
+ * beginWrite and endWrite, see reconcile.
+ */
+class UnreadNotificationCounters {
+    private final static long RECONCILE_INTERVAL_MILLIS = 30 * 1000;
+
+    private static class Counter {
+        private final AtomicInteger unread;
+        private final long reconciledMillis;
+
+        private Counter(int unread) {
+            this.unread = new AtomicInteger(unread);
+            this.reconciledMillis = System.currentTimeMillis();
+        }
+    }
+
+    private final LruCache<UUID, Counter> counters;
+    private final AtomicLong changes = new AtomicLong(); // Incremented when a write begins or ends and by invalidate, see getStamp
+    private int pendingWrites = 0; // Guarded by changes
+
+    /**
+     * @param capacity Maximum number of users whose counter is kept in memory
+     */
+    UnreadNotificationCounters(int capacity) {
+        counters = new LruCache<>(capacity);
+    }
+
+    /**
+     * @param userID UUID of the user
+     * @return Number of unread notifications, null if it has to be read again from the database
+     */
+    Integer get(UUID userID) {
+        Counter counter = counters.get(userID);
+        if (counter == null || System.currentTimeMillis() - counter.reconciledMillis > RECONCILE_INTERVAL_MILLIS)
+            return null;
+        return counter.unread.get();
+    }
+
+    /**
+     * To be read before counting notifications in the database, and passed to reconcile
+     * @return A value that changes whenever a write begins or ends, or a counter is invalidated
+     */
+    long getStamp() {
+        return changes.get();
+    }
+
+    /**
+     * Replaces the counter of a user with the value just read from the database, unless a write began or ended since
+     * the read started, or is still running: unread may or may not include it, and its add may or may not have been
+     * applied to the counter yet, so storing unread could count it twice or never.
+     * In that case the counter is dropped instead, and read again next time
+     * @param userID UUID of the user
+     * @param unread Number of unread notifications
+     * @param stamp Value returned by getStamp before the read
+     */
+    void reconcile(UUID userID, int unread, long stamp) {
+        synchronized (changes) {
+            if (changes.get() == stamp && pendingWrites == 0)
+                counters.put(userID, new Counter(unread));
+            else
+                counters.remove(userID);
+        }
+    }
+
+    /**
+     * To be called before a notification is written to the database, and followed by endWrite once the write has been
+     * committed or has failed. Counters read from the database in the meantime are not stored, see reconcile
+     */
+    void beginWrite() {
+        synchronized (changes) {
+            changes.incrementAndGet();
+            pendingWrites++;
+        }
+    }
+
+    /**
+     * To be called in a finally block after beginWrite, once add has been called for the committed changes
+     */
+    void endWrite() {
+        synchronized (changes) {
+            changes.incrementAndGet();
+            pendingWrites--;
+        }
+    }
+
+    /**
+     * Updates the counter of a user, if it is being tracked.
+     * To be called after the change has been committed, between beginWrite and endWrite
+     * @param userID UUID of the user
+     * @param delta Positive when notifications are added or marked as unread, negative when they are marked as read
+     */
+    void add(UUID userID, int delta) {
+        Counter counter = counters.get(userID);
+        if (counter != null)
+            counter.unread.accumulateAndGet(delta, (current, d) -> Math.max(0, current + d));
+    }
+
+    /**
+     * Forgets the counter of a user, so that it is read again from the database
+     * @param userID UUID of the user
+     */
+    void invalidate(UUID userID) {
+        synchronized (changes) {
+            changes.incrementAndGet();
+        }
+        counters.remove(userID);
+    }
+}
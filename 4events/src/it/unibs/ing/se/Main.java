@@ -3,34 +3,67 @@ package it.unibs.ing.se;
 import it.unibs.ing.se.DMO.Connector;
 import it.unibs.ing.se.DMO.JsonConfigReader;
 import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.DMO.MigrationRunner;
 import it.unibs.ing.se.controller.MainMenuController;
 import it.unibs.ing.se.helpers.EventHelper;
+import it.unibs.ing.se.helpers.EventStateScheduler;
+import it.unibs.ing.se.helpers.TaskProgress;
 import it.unibs.ing.se.view.*;
 import it.unibs.ing.se.view.commands.MainCommand;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Main {
     private static final String CONFIG_JSON_PATH = "config.json";
+    private static final String MIGRATIONS_PATH = "db/migrations";
+    private static final String RECONCILE_FLAG = "--reconcile"; // Full, parallel reconciliation of events, i.e. after a long downtime
+    private static final String MIGRATE_FLAG = "--migrate"; // Applies pending schema migrations and exits
 
     public static void main(String[] args) {
         Path configJsonPath = Paths.get(CONFIG_JSON_PATH);
         JsonConfigReader config = new JsonConfigReader(configJsonPath.toString());
+        boolean reconcile = Arrays.asList(args).contains(RECONCILE_FLAG);
+        boolean migrateOnly = Arrays.asList(args).contains(MIGRATE_FLAG);
 
+        // The database connection is opened while the translation is loaded, whoever needs it first waits for it
+        CompletableFuture<Connector> dbReady = Connector.getInstanceAsync(config.getDBURL(), config.getDBUser(), config.getDBPassword(),
+                config.getDBPoolMinSize(Connector.DEFAULT_POOL_MIN_SIZE), config.getDBPoolMaxSize(Connector.DEFAULT_POOL_MAX_SIZE));
         JsonTranslator translation = JsonTranslator.getInstance();
 
-        try { // Initializes the Connector for future usage
-            Connector.getInstance(config.getDBURL(), config.getDBUser(), config.getDBPassword());
-        } catch (SQLException e) {
-            System.err.println(translation.getTranslation("SQLError"));
-            System.exit(1);
+        if (migrateOnly || config.isAutoMigrate(false)) { // The schema has to be up to date before anything else uses it
+            int applied = migrate(dbReady, translation);
+            if (migrateOnly) {
+                System.out.println(String.format(translation.getTranslation("migrationsApplied"), applied));
+                System.exit(0);
+            }
         }
 
-        EventHelper eHelper = new EventHelper();
-        eHelper.updateAllEvents();
+        TaskProgress eventsUpdate = new TaskProgress();
+        if (config.isFastStart(true)) { // Users can log in while events are updated
+            ExecutorService startupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "startup-events-update");
+                thread.setDaemon(true); // Must not keep the program alive on exit
+                return thread;
+            });
+            startupExecutor.execute(() -> updateEvents(eventsUpdate, reconcile));
+            startupExecutor.shutdown(); // Its thread ends with the task
+        } else {
+            try {
+                dbReady.join();
+            } catch (CompletionException e) {
+                System.err.println(translation.getTranslation("SQLError"));
+                System.exit(1);
+            }
+            updateEvents(eventsUpdate, reconcile);
+        }
 
         System.out.println(translation.getTranslation("welcome"));
 
@@ -38,7 +71,7 @@ public class Main {
         mainController.loginAndSet();
 
         UUID currentUserID = mainController.getCurrentUserID();
-        MainMenuView mainView = new MainMenuView(currentUserID);
+        MainMenuView mainView = new MainMenuView(currentUserID, eventsUpdate);
         MainCommand userSelection;
 
         while (true) {
@@ -47,4 +80,42 @@ public class Main {
             mainController.perform(userSelection);
         }
     }
+
+    /**
+     * Applies pending schema migrations, waiting for the database connection. Exits the program if anything goes wrong
+     * @param dbReady CompletableFuture returned by Connector.getInstanceAsync
+     * @param translation JsonTranslator instance
+     * @return Number of applied migrations
+     */
+    private static int migrate(CompletableFuture<Connector> dbReady, JsonTranslator translation) {
+        try {
+            return new MigrationRunner(dbReady.join(), Paths.get(MIGRATIONS_PATH)).migrate();
+        } catch (CompletionException | SQLException e) {
+            System.err.println(translation.getTranslation("SQLError"));
+        } catch (IOException | IllegalStateException e) {
+            System.err.println(String.format(translation.getTranslation("migrationError"), e.getMessage()));
+        }
+        System.exit(1);
+        return 0;
+    }
+
+    /**
+     * Catches up with what happened to events while the program was not running, then keeps them up to date as their dates pass
+     * @param progress TaskProgress to report to
+     * @param reconcile True to reconcile every active event one by one in parallel instead of the set-based update
+     */
+    private static void updateEvents(TaskProgress progress, boolean reconcile) {
+        EventHelper eHelper;
+        try {
+            eHelper = new EventHelper();
+        } catch (IllegalStateException e) {
+            progress.finish(); // No database: the main thread reports it as soon as it needs the connection
+            return;
+        }
+        if (reconcile)
+            eHelper.reconcileAllEvents(progress);
+        else
+            eHelper.updateAllEvents(progress);
+        EventStateScheduler.getInstance().start();
+    }
 }
\ No newline at end of file
@@ -35,10 +35,12 @@ public class DashboardController implements ControllerInterface<DashboardCommand
                 break;
             case PERSONAL_NOTIFICATIONS:
                 PersonalNotificationView personalNotificationView = new PersonalNotificationView(currentUserID);
-                personalNotificationView.print();
-                ArrayList<UUID> readNotifications = personalNotificationView.parseInput();
                 PersonalNotificationController personalNotificationController = new PersonalNotificationController();
-                personalNotificationController.perform(readNotifications);
+                do { // One page of notifications at a time
+                    personalNotificationView.print();
+                    ArrayList<UUID> readNotifications = personalNotificationView.parseInput();
+                    personalNotificationController.perform(readNotifications);
+                } while (personalNotificationView.nextPage());
                 break;
             case CREATED_EVENTS:
                 CreatedEventsView createdEventsView = new CreatedEventsView(currentUserID);
@@ -2,7 +2,9 @@ package it.unibs.ing.se.controller;
 
 import it.unibs.ing.se.DMO.Connector;
 import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.helpers.EventStateScheduler;
 import it.unibs.ing.se.helpers.LoginHelper;
+import it.unibs.ing.se.helpers.NotificationDispatcher;
 import it.unibs.ing.se.view.*;
 import it.unibs.ing.se.view.commands.DashboardCommand;
 import it.unibs.ing.se.view.commands.EventCommand;
@@ -49,7 +51,9 @@ public class MainMenuController implements ControllerInterface<MainCommand> {
             case PUBLIC_EVENTS_LIST:
                 PublicEventsView publicEventsView = new PublicEventsView();
                 publicEventsView.createWorkingSet();
-                publicEventsView.print();
+                do {
+                    publicEventsView.print();
+                } while (publicEventsView.changePage());
                 UUID selectedEvent = publicEventsView.parseInput();
                 if (selectedEvent == null) // In case the user did not select any event
                     break;
@@ -72,6 +76,8 @@ public class MainMenuController implements ControllerInterface<MainCommand> {
                 helpView.print();
                 break;
             case QUIT:
+                EventStateScheduler.getInstance().stop(); // No more state changes, hence no more notifications
+                NotificationDispatcher.getInstance().shutdown(); // Pending notifications need the database
                 Connector.getInstance().closeDb();
                 System.out.println(translation.getTranslation("exit"));
                 System.exit(0);
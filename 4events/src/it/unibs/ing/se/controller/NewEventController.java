@@ -3,7 +3,8 @@ package it.unibs.ing.se.controller;
 import it.unibs.ing.se.DMO.Connector;
 import it.unibs.ing.se.DMO.JsonTranslator;
 import it.unibs.ing.se.helpers.EventHelper;
-import it.unibs.ing.se.helpers.NotificationHelper;
+import it.unibs.ing.se.helpers.NotificationDispatcher;
+import it.unibs.ing.se.model.AttributeTable;
 import it.unibs.ing.se.model.Event;
 import it.unibs.ing.se.model.EventFactory;
 import it.unibs.ing.se.view.NewEventInvitesView;
@@ -12,9 +13,6 @@ import it.unibs.ing.se.view.inputwrappers.EventInput;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.UUID;
 
 public class NewEventController implements ControllerInterface<EventInput> {
@@ -32,12 +30,11 @@ public class NewEventController implements ControllerInterface<EventInput> {
     public void perform(EventInput selection) {
         EventFactory eFactory = new EventFactory();
         Event newEvent = eFactory.createEvent(UUID.randomUUID(), userID, selection.getEventType());
-        LinkedHashMap<String, Object> inputAttributes = selection.getNonNullAttributesWithValue();
-        Iterator iterator = inputAttributes.entrySet().iterator(); // Get an iterator for our map
-
-        while(iterator.hasNext()) {
-            Map.Entry entry = (Map.Entry)iterator.next();
-            newEvent.setAttribute((String) entry.getKey(), entry.getValue());
+        AttributeTable eventAttributes = newEvent.getAttributeTable();
+        for (AttributeTable.Attribute inputAttribute : selection.getAttributeTable()) {
+            Object value = inputAttribute.get(selection);
+            if (value != null)
+                eventAttributes.get(inputAttribute.getName()).set(newEvent, value); // Input wrappers mirror Event attributes
         }
         try {
             newEvent.isLegal(LocalDateTime.now());
@@ -47,12 +44,12 @@ public class NewEventController implements ControllerInterface<EventInput> {
             return;
         }
 
-        newEvent.setAttribute("participantsMax",
+        newEvent.setParticipantsMax(
                 newEvent.participantsMin +
                         (newEvent.participantsSurplus == null ? 0 : newEvent.participantsSurplus));
 
         if (newEvent.deregistrationDeadline == null) // As specified by client request, if deregistration deadline wasn't set...
-            newEvent.setAttribute("deregistrationDeadline", newEvent.registrationDeadline); // it defaults to registration deadline
+            newEvent.deregistrationDeadline = newEvent.registrationDeadline; // it defaults to registration deadline
 
         newEvent.updateState(LocalDateTime.now()); // UNKNOWN -> VALID
         try {
@@ -73,10 +70,8 @@ public class NewEventController implements ControllerInterface<EventInput> {
 
             NewEventInvitesView newEventInvitesView = new NewEventInvitesView();
             boolean invitesNeeded = newEventInvitesView.parseInput();
-            if (invitesNeeded) {
-                NotificationHelper notHelper = new NotificationHelper(newEvent.getEventID());
-                notHelper.sendInvites();
-            }
+            if (invitesNeeded)
+                NotificationDispatcher.getInstance().sendInvites(newEvent.getEventID());
         }
     }
 }
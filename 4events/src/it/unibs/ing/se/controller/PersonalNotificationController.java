@@ -22,13 +22,11 @@ public class PersonalNotificationController implements ControllerInterface<Array
     public void perform(ArrayList<UUID> selection) {
         if (selection == null)
             return;
-        for (UUID notificationID : selection) {
-            try {
-                dbConnection.markNotificationRead(notificationID, true);
-            } catch (SQLException e) {
-                System.err.println("FATAL: Impossible to connect to SQL database. Contact your sysadmin");
-                System.exit(1);
-            }
+        try {
+            dbConnection.markNotificationsRead(selection, true); // A single UPDATE for the whole selection
+        } catch (SQLException e) {
+            System.err.println("FATAL: Impossible to connect to SQL database. Contact your sysadmin");
+            System.exit(1);
         }
     }
 }
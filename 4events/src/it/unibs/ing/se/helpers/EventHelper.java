@@ -11,10 +11,17 @@ import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class EventHelper {
+    private final static int MAX_STATE_UPDATE_ATTEMPTS = 5;
+    private final static int MAX_RECONCILE_STEPS = 4; // Longest chain of time-driven transitions: VALID, OPEN, CLOSED, ENDED
+    private final static int RECONCILE_PARTITION_SIZE = 250; // Events read at once by a reconcile worker
+
     private Connector dbConnection;
     protected JsonTranslator translation;
 
@@ -49,14 +56,20 @@ public class EventHelper {
             System.err.println(translation.getTranslation("eventRegistrationMaximumReached"));
         }
 
-        if (canRegister) {
+        if (canRegister) { // The event looked available, but other users may have taken the last seats in the meantime
             WantedOptionalCostView wantedOptionalCostView = new WantedOptionalCostView(eventID);
             wantedOptionalCostView.print();
             LinkedHashMap<String, OptionalCost> selectedCosts = wantedOptionalCostView.parseInput();
 
             try {
-                dbConnection.insertOptionalCosts(selectedCosts, eventID, userID);
-                dbConnection.updateEventRegistrations(event);
+                dbConnection.insertRegistration(eventID, userID, selectedCosts);
+                EventStateScheduler.getInstance().wakeUp(eventID); // The event may now be full
+            } catch (IllegalArgumentException e) {
+                System.err.println(translation.getTranslation("userAlreadyRegisteredToEvent"));
+                canRegister = false;
+            } catch (IllegalStateException e) {
+                System.err.println(translation.getTranslation("eventRegistrationMaximumReached"));
+                canRegister = false;
             } catch (SQLException e) {
                 System.err.println(translation.getTranslation("SQLError"));
                 System.exit(1);
@@ -79,9 +92,11 @@ public class EventHelper {
         } catch (IllegalStateException | IllegalArgumentException e) {
             System.err.println(translation.getTranslation("errorEventDeregistration"));
             System.err.println(e.getMessage());
+            return; // Nothing changed, nothing to save
         }
         try {
-            dbConnection.updateEventRegistrations(event);
+            if (dbConnection.deleteRegistration(eventID, userID))
+                EventStateScheduler.getInstance().wakeUp(eventID); // A seat is free again
         } catch (SQLException e) {
             System.err.println(translation.getTranslation("SQLError"));
             System.exit(1);
@@ -95,52 +110,167 @@ public class EventHelper {
             System.err.println("FATAL: Impossible to connect to SQL database. Contact your sysadmin");
             System.exit(1);
         }
+        EventStateScheduler.getInstance().wakeUp(eventID); // A published event may have to open
     }
 
-    public void updateStatus(UUID eventID) {
+    /**
+     * Updates the state of an event, saving it and sending notifications if it has changed
+     * @param eventID UUID of the event
+     * @return The event as it is after the update
+     */
+    public Event updateStatus(UUID eventID) {
         Event event = null;
-        Event.State oldState = null;
-        boolean eventUpdated = false;
+        boolean notifyUsers = false;
         try {
-            event = dbConnection.getEvent(eventID);
-            oldState = event.getCurrentState();
-            eventUpdated = event.updateState(LocalDateTime.now());
-            dbConnection.updateEventState(eventID, event.getCurrentState());
+            for (int attempt = 0; attempt < MAX_STATE_UPDATE_ATTEMPTS; attempt++) {
+                event = dbConnection.getEvent(eventID);
+                Event.State oldState = event.getCurrentState();
+                if (!event.updateState(LocalDateTime.now()))
+                    break;
+                notifyUsers = needsNotification(oldState, event.getCurrentState());
+                if (dbConnection.updateEventState(eventID, event.getCurrentState(), event.getVersion(), notifyUsers)) {
+                    event.setVersion(event.getVersion() + 1); // As the database did
+                    break;
+                }
+                notifyUsers = false; // Somebody changed the event after we read it: read it again and recompute its state
+            }
         } catch (SQLException e) {
             System.err.println(translation.getTranslation("SQLError"));
             System.exit(1);
         }
 
-        if (eventUpdated &&
-                !(oldState == Event.State.CLOSED && event.getCurrentState() == Event.State.OPEN)) {
-            // No need to throw notifications if the transition was CLOSED -> OPEN since users already
-            // received notifications when the event reached OPEN state first
-            NotificationHelper notHelper = new NotificationHelper(eventID);
-            notHelper.send();
-        }
+        if (notifyUsers)
+            NotificationDispatcher.getInstance().relay(); // Users do not wait for the fan-out queued with the update
+        return event;
+    }
+
+    /**
+     * @param oldState State of an event before a transition
+     * @param newState State of the event after the transition
+     * @return True if users have to be notified of the transition
+     */
+    private static boolean needsNotification(Event.State oldState, Event.State newState) {
+        // No need to throw notifications if the transition was CLOSED -> OPEN since users already
+        // received notifications when the event reached OPEN state first. Nobody is notified of ENDED events either
+        return !(oldState == Event.State.CLOSED && newState == Event.State.OPEN) && newState != Event.State.ENDED;
     }
 
     /**
-     * This method iterates over all the active events in the database and check if any needs to be updated.
-     * If so it proceeds to update it and save it back into the database with its updated status.
-     * If the new status require to send notifications to user it does so.
+     * This method moves all the events in the database whose state depends on time to their new state, in a single sweep.
+     * The sweep queues the notifications their new states require in the outbox, which is then drained.
      */
     public void updateAllEvents() {
+        updateAllEvents(new TaskProgress());
+    }
+
+    /**
+     * Same as updateAllEvents(), reporting progress while sending notifications, that is the slow part
+     * @param progress TaskProgress updated with the number of fan-outs in the outbox and how many of them have been sent
+     */
+    public void updateAllEvents(TaskProgress progress) {
         if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
 
-        ArrayList<UUID> activeEventsID = null;
         try {
-            activeEventsID = dbConnection.getActiveEvents();
+            dbConnection.updateEventStates(LocalDateTime.now());
         } catch (SQLException e) {
             System.err.println(translation.getTranslation("SQLError"));
             System.exit(1);
+            return;
+        }
+        NotificationDispatcher.getInstance().drainOutbox(progress); // Also sends what a previous run left there
+    }
+
+    /**
+     * Full reconciliation of all active events, i.e. after the program has not been running for a long time.
+     * Unlike updateAllEvents every event goes through Event.updateState, as many times as needed to catch up, and the
+     * work is split among as many threads as cores (and pooled connections) are available.
+     * Every transition is saved with a version check, so that an event updated concurrently (i.e. by EventStateScheduler)
+     * is never saved or notified twice.
+     * @param progress TaskProgress updated with the number of active events and how many of them have been reconciled
+     */
+    public void reconcileAllEvents(TaskProgress progress) {
+        if (dbConnection == null) throw new IllegalStateException("ALERT: No connection to the database");
+
+        ArrayList<UUID> activeEventIDs;
+        try {
+            activeEventIDs = dbConnection.getActiveEvents();
         } catch (NoSuchElementException e) {
-            // The database is empty
+            progress.finish(); // The database is empty
             return;
+        } catch (SQLException e) {
+            System.err.println(translation.getTranslation("SQLError"));
+            System.exit(1);
+            return;
+        }
+
+        progress.setTotal(activeEventIDs.size());
+        int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), dbConnection.getConnectionPool().getMaxSize());
+        ForkJoinPool reconcilePool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            reconcilePool.invoke(new ReconcileTask(this, activeEventIDs, LocalDateTime.now(), progress));
+        } finally {
+            reconcilePool.shutdown();
         }
+        progress.finish();
+        NotificationDispatcher.getInstance().relay();
+    }
+
+    /**
+     * Reconciles a partition of the active events, splitting it in halves until it is small enough for a single getEvents
+     */
+    private static class ReconcileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // Never serialized, ForkJoinTask just happens to be Serializable
+
+        private final EventHelper helper;
+        private final List<UUID> eventIDs;
+        private final LocalDateTime currentDateTime;
+        private final TaskProgress progress;
 
-        for (UUID eventID : activeEventsID) {
-            updateStatus(eventID);
+        /**
+         * @param helper EventHelper whose connection is used, and whose updateStatus solves conflicts
+         * @param eventIDs UUIDs of the events to reconcile
+         * @param currentDateTime LocalDateTime to reconcile events to, the same for all of them
+         * @param progress TaskProgress advanced once per reconciled event
+         */
+        private ReconcileTask(EventHelper helper, List<UUID> eventIDs, LocalDateTime currentDateTime, TaskProgress progress) {
+            this.helper = helper;
+            this.eventIDs = eventIDs;
+            this.currentDateTime = currentDateTime;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (eventIDs.size() > RECONCILE_PARTITION_SIZE) {
+                int half = eventIDs.size() / 2;
+                invokeAll(new ReconcileTask(helper, eventIDs.subList(0, half), currentDateTime, progress),
+                        new ReconcileTask(helper, eventIDs.subList(half, eventIDs.size()), currentDateTime, progress));
+                return;
+            }
+
+            try {
+                for (Event event : helper.dbConnection.getEvents(eventIDs).values()) { // Every worker borrows its own connection
+                    reconcile(event);
+                    progress.advance();
+                }
+            } catch (SQLException e) {
+                System.err.println(helper.translation.getTranslation("SQLError"));
+                System.exit(1);
+            }
+        }
+
+        private void reconcile(Event event) throws SQLException {
+            for (int step = 0; step < MAX_RECONCILE_STEPS; step++) { // After a long downtime an event can be more than one step behind
+                Event.State oldState = event.getCurrentState();
+                if (!event.updateState(currentDateTime))
+                    return;
+                boolean notifyUsers = needsNotification(oldState, event.getCurrentState());
+                if (!helper.dbConnection.updateEventState(event.getEventID(), event.getCurrentState(), event.getVersion(), notifyUsers)) {
+                    helper.updateStatus(event.getEventID()); // Somebody else changed it in the meantime: go through the usual path
+                    return;
+                }
+                event.setVersion(event.getVersion() + 1); // As the database did
+            }
         }
     }
-}
\ No newline at end of file
+}
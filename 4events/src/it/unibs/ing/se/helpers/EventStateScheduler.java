@@ -0,0 +1,177 @@
+package it.unibs.ing.se.helpers;
+
+import it.unibs.ing.se.DMO.Connector;
+import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.model.Event;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that updates the state of active events exactly when their dates say it has to change.
+ * Every event waits in a DelayQueue until its next state change date (see Event.getNextStateChangeDate),
+ * then a background thread updates it through EventHelper.updateStatus and schedules it again for its new state.
+ * The thread sleeps until the first event is due, so there is no polling and no periodic scan of the database.
+ */
+public class EventStateScheduler {
+    private final static long RESCHEDULE_DELAY_MILLIS = 1000; // Minimum wait before an event is checked again
+
+    private static volatile EventStateScheduler singleInstance;
+
+    private final DelayQueue<Entry> queue = new DelayQueue<>();
+    private final ConcurrentHashMap<UUID, Entry> scheduled = new ConcurrentHashMap<>(); // Latest entry of every event
+    private Thread worker;
+
+    private static class Entry implements Delayed {
+        private final UUID eventID;
+        private final long dueMillis;
+
+        private Entry(UUID eventID, long dueMillis) {
+            this.eventID = eventID;
+            this.dueMillis = dueMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueMillis, ((Entry) other).dueMillis);
+        }
+    }
+
+    private EventStateScheduler() { }
+
+    /**
+     * @return EventStateScheduler instance, not running until start is called
+     */
+    public static EventStateScheduler getInstance() {
+        if (singleInstance == null) {
+            synchronized (EventStateScheduler.class) {
+                if (singleInstance == null)
+                    singleInstance = new EventStateScheduler();
+            }
+        }
+        return singleInstance;
+    }
+
+    /**
+     * Schedules all active events in the database and starts the background thread. Does nothing if already running
+     * @throws IllegalStateException If called before a database connection is established
+     */
+    public synchronized void start() throws IllegalStateException {
+        if (worker != null)
+            return;
+
+        Connector dbConnection = Connector.getInstance();
+        try {
+            // Only the dates are read, events are loaded one at a time when due
+            for (Map.Entry<UUID, LocalDateTime> entry : dbConnection.getNextStateChangeDates().entrySet())
+                schedule(entry.getKey(), dueMillis(entry.getValue()));
+        } catch (SQLException e) {
+            System.err.println(JsonTranslator.getInstance().getTranslation("SQLError"));
+            System.exit(1);
+        }
+
+        worker = new Thread(this::run, "event-state-scheduler");
+        worker.setDaemon(true); // Must not keep the program alive on exit
+        worker.start();
+    }
+
+    /**
+     * Stops the background thread. Scheduled events are kept and will be handled if the scheduler is started again
+     */
+    public synchronized void stop() {
+        if (worker == null)
+            return;
+        worker.interrupt();
+        worker = null;
+    }
+
+    /**
+     * Schedules an event for its next state change date, replacing any previous schedule of the same event
+     * @param event An Event as it is in the database
+     */
+    public void schedule(Event event) {
+        LocalDateTime nextStateChangeDate = event.getNextStateChangeDate();
+        if (nextStateChangeDate == null) {
+            cancel(event.getEventID()); // Nothing will happen with time alone
+            return;
+        }
+        schedule(event.getEventID(), dueMillis(nextStateChangeDate));
+    }
+
+    /**
+     * Has the state of an event checked as soon as possible, i.e. after a registration which may have filled it
+     * @param eventID UUID of the event
+     */
+    public void wakeUp(UUID eventID) {
+        schedule(eventID, System.currentTimeMillis());
+    }
+
+    /**
+     * Removes an event from the schedule
+     * @param eventID UUID of the event
+     */
+    public void cancel(UUID eventID) {
+        scheduled.remove(eventID); // Its entry stays in the queue but is ignored when due
+    }
+
+    /**
+     * @return Number of events currently waiting for a state change
+     */
+    public int size() { return scheduled.size(); }
+
+    private void schedule(UUID eventID, long dueMillis) {
+        Entry entry = new Entry(eventID, dueMillis);
+        scheduled.put(eventID, entry); // Superseded entries are skipped when due, removing them from the queue would cost O(n)
+        queue.add(entry);
+    }
+
+    /**
+     * @param nextStateChangeDate Last date at which an event keeps its state
+     * @return The first millisecond at which updateState will change it, since it checks with isAfter
+     */
+    private static long dueMillis(LocalDateTime nextStateChangeDate) {
+        return nextStateChangeDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 1;
+    }
+
+    private void run() {
+        EventHelper eHelper = new EventHelper();
+        while (!Thread.currentThread().isInterrupted()) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return; // Stopped
+            }
+            if (!scheduled.remove(entry.eventID, entry))
+                continue; // Rescheduled or cancelled in the meantime
+
+            Event event;
+            try {
+                event = eHelper.updateStatus(entry.eventID);
+            } catch (NoSuchElementException e) {
+                continue; // The event is not in the database anymore
+            }
+            LocalDateTime nextStateChangeDate = event.getNextStateChangeDate();
+            if (nextStateChangeDate != null) {
+                // If the state did not change (i.e. a concurrent update won) the same date comes back: do not spin on it
+                long dueMillis = Math.max(dueMillis(nextStateChangeDate), System.currentTimeMillis() + RESCHEDULE_DELAY_MILLIS);
+                Entry next = new Entry(entry.eventID, dueMillis);
+                if (scheduled.putIfAbsent(entry.eventID, next) == null) // Otherwise somebody woke it up in the meantime
+                    queue.add(next);
+            }
+        }
+    }
+}
@@ -20,10 +20,10 @@ public class LoginHelper {
     public UUID login() {
         UUID newUser;
 
-        LoginSignupController loginSignupController = new LoginSignupController();
         LoginSignupView loginSignupView = new LoginSignupView();
         loginSignupView.print();
         Integer userInput = loginSignupView.parseInput();
+        LoginSignupController loginSignupController = new LoginSignupController(); // Only now it needs the database
         if (userInput == 1) {
             // Login
             LoginView login = new LoginView();
@@ -0,0 +1,248 @@
+package it.unibs.ing.se.helpers;
+
+import it.unibs.ing.se.DMO.Connector;
+import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.DMO.OutboxJob;
+import it.unibs.ing.se.model.Event;
+import it.unibs.ing.se.model.Notification;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton class that renders and saves notifications in background, so that the action which triggered them
+ * returns immediately. Fan-out jobs wait in a bounded queue served by a few worker threads: when the queue is full
+ * the thread submitting a job runs it by itself, which slows producers down instead of dropping notifications.
+ * Notifications of state changes are relayed from the outbox, where they are queued by the state change itself
+ * (see Connector.updateEventState), so that they are neither lost nor duplicated if the program stops in between.
+ * A job that is claimed RELAY_MAX_ATTEMPTS times without being sent is moved to dead letters rather than retried forever.
+ */
+public class NotificationDispatcher {
+    private final static int WORKERS = 2; // Every worker uses a pooled database connection while sending
+    private final static int QUEUE_CAPACITY = 256;
+    private final static long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private final static int RELAY_BATCH_SIZE = 100; // Outbox jobs claimed and sent at once
+    private final static long RELAY_LEASE_MILLIS = 60 * 1000; // After this, jobs claimed by a relay that stopped are sent again
+    private final static int RELAY_MAX_ATTEMPTS = 5; // Jobs claimed this many times without being sent are moved to dead letters
+
+    private static volatile NotificationDispatcher singleInstance;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submittedTotal = new AtomicLong();
+    private final AtomicLong completedTotal = new AtomicLong();
+    private final AtomicLong callerRunsTotal = new AtomicLong();
+    private final AtomicLong lagNanos = new AtomicLong(); // Time spent by jobs waiting in the queue
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final AtomicLong relayedTotal = new AtomicLong();
+    private final AtomicLong deadLetteredTotal = new AtomicLong();
+    private final AtomicBoolean relayPending = new AtomicBoolean(); // A relay job is queued and has not started yet
+
+    /**
+     * A fan-out job, remembering when it was submitted to measure its lag
+     */
+    private class Job implements Runnable {
+        private final Runnable fanOut;
+        private final long submittedNanos = System.nanoTime();
+
+        private Job(Runnable fanOut) {
+            this.fanOut = fanOut;
+        }
+
+        @Override
+        public void run() {
+            long lag = System.nanoTime() - submittedNanos;
+            lagNanos.addAndGet(lag);
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            try {
+                fanOut.run();
+            } finally {
+                completedTotal.incrementAndGet();
+            }
+        }
+    }
+
+    private NotificationDispatcher() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        RejectedExecutionHandler backpressure = new ThreadPoolExecutor.CallerRunsPolicy() {
+            @Override
+            public void rejectedExecution(Runnable job, ThreadPoolExecutor executor) {
+                callerRunsTotal.incrementAndGet();
+                super.rejectedExecution(job, executor);
+            }
+        };
+        executor = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "notification-dispatcher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true); // Must not keep the program alive on exit, see shutdown
+                    return thread;
+                },
+                backpressure);
+    }
+
+    /**
+     * @return NotificationDispatcher instance, its workers are started with the first job
+     */
+    public static NotificationDispatcher getInstance() {
+        if (singleInstance == null) {
+            synchronized (NotificationDispatcher.class) {
+                if (singleInstance == null)
+                    singleInstance = new NotificationDispatcher();
+            }
+        }
+        return singleInstance;
+    }
+
+    /**
+     * Sends in background the notifications waiting in the outbox, i.e. after a state change has queued some.
+     * Requests made while a relay job is still queued are served by that job
+     */
+    public void relay() {
+        if (relayPending.compareAndSet(false, true))
+            submit(() -> {
+                relayPending.set(false); // Jobs queued from now on may be missed by this run, let another one be queued
+                drainOutbox(new TaskProgress());
+            });
+    }
+
+    /**
+     * Sends the notifications waiting in the outbox on the calling thread, until it is empty
+     * @param progress TaskProgress updated with the number of waiting jobs and how many of them have been sent
+     * @return Number of outbox jobs sent
+     */
+    public int drainOutbox(TaskProgress progress) {
+        Connector dbConnection = Connector.getInstance();
+        int relayed = 0;
+        try {
+            int deadLettered = dbConnection.deadLetterOutboxJobs(RELAY_MAX_ATTEMPTS); // Before counting, they will not be sent
+            if (deadLettered > 0) {
+                deadLetteredTotal.addAndGet(deadLettered);
+                System.err.println(String.format(JsonTranslator.getInstance().getTranslation("outboxJobsDeadLettered"), deadLettered));
+            }
+            progress.setTotal(dbConnection.getOutboxJobsCount());
+            int batch;
+            while ((batch = relayBatch(dbConnection)) > 0) {
+                relayed += batch;
+                for (int i = 0; i < batch; i++)
+                    progress.advance();
+            }
+        } catch (SQLException e) {
+            System.err.println(JsonTranslator.getInstance().getTranslation("SQLError"));
+            System.exit(1);
+        }
+        progress.finish();
+        return relayed;
+    }
+
+    /**
+     * Claims a batch of outbox jobs, saves all their notifications in one transaction and removes them from the outbox.
+     * Notifications are built from the state and recipients stored in the job, not from the event as it is now,
+     * so that a job sent again produces the same notifications. The event only provides what never changes, i.e. its title
+     * Notification IDs are derived from the job, so if the program stops before the jobs are removed
+     * they are sent again once their lease expires without duplicating what was already saved
+     * @param dbConnection Connector instance
+     * @return Number of jobs sent, 0 if the outbox is empty
+     * @throws SQLException If a database access error occurs
+     */
+    private int relayBatch(Connector dbConnection) throws SQLException {
+        ArrayList<OutboxJob> jobs = dbConnection.claimOutboxJobs(RELAY_BATCH_SIZE, RELAY_LEASE_MILLIS, RELAY_MAX_ATTEMPTS);
+        if (jobs.isEmpty())
+            return 0;
+
+        HashSet<UUID> eventIDs = new HashSet<>();
+        for (OutboxJob job : jobs)
+            eventIDs.add(job.getEventID());
+        LinkedHashMap<UUID, Event> events = dbConnection.getEvents(eventIDs);
+
+        ArrayList<Notification> notifications = new ArrayList<>();
+        for (OutboxJob job : jobs) {
+            Event event = events.get(job.getEventID());
+            if (event == null) // Deleted in the meantime, nobody to tell
+                continue;
+            ArrayList<UUID> recipients = job.getRecipients(); // As they were at the state change, whatever happened since
+            if (recipients == null) { // Queued before the outbox stored them: the event is the best guess left
+                if (event.getVersion() != job.getVersion())
+                    System.err.println("ALERT: Event " + job.getEventID() + " changed after outbox job " + job.getIdempotencyKey() + ", using current registrations");
+                recipients = event.getRegisteredUsers();
+            }
+            notifications.addAll(new NotificationHelper(event, job.getIdempotencyKey()).build(job.getState(), recipients));
+        }
+        dbConnection.insertNotifications(notifications);
+        dbConnection.deleteOutboxJobs(jobs);
+        relayedTotal.addAndGet(jobs.size());
+        return jobs.size();
+    }
+
+    /**
+     * Sends in background the invites to a new event, see NotificationHelper.sendInvites
+     * @param eventID UUID of the event
+     */
+    public void sendInvites(UUID eventID) {
+        submit(() -> new NotificationHelper(eventID).sendInvites());
+    }
+
+    private void submit(Runnable fanOut) {
+        submittedTotal.incrementAndGet();
+        executor.execute(new Job(fanOut));
+    }
+
+    /**
+     * Waits for queued jobs to be completed and stops the workers. Must be called before closing the database connection
+     * @return True if all the jobs were completed in time
+     */
+    public boolean shutdown() {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getQueueDepth() { return executor.getQueue().size(); }
+
+    public int getActiveCount() { return executor.getActiveCount(); }
+
+    public long getSubmittedCount() { return submittedTotal.get(); }
+
+    public long getCompletedCount() { return completedTotal.get(); }
+
+    public long getCallerRunsCount() { return callerRunsTotal.get(); }
+
+    public long getRelayedCount() { return relayedTotal.get(); }
+
+    public long getDeadLetteredCount() { return deadLetteredTotal.get(); }
+
+    public double getAverageLagMillis() {
+        long completed = completedTotal.get();
+        return completed == 0 ? 0 : lagNanos.get() / 1e6 / completed;
+    }
+
+    public double getMaxLagMillis() { return maxLagNanos.get() / 1e6; }
+
+    @Override
+    public String toString() {
+        return "NotificationDispatcher{" +
+                "queued=" + getQueueDepth() +
+                ", active=" + getActiveCount() +
+                ", submitted=" + getSubmittedCount() +
+                ", completed=" + getCompletedCount() +
+                ", callerRuns=" + getCallerRunsCount() +
+                ", relayed=" + getRelayedCount() +
+                ", deadLettered=" + getDeadLetteredCount() +
+                String.format(", avgLag=%.3fms, maxLag=%.3fms", getAverageLagMillis(), getMaxLagMillis()) +
+                '}';
+    }
+}
@@ -5,9 +5,11 @@ import it.unibs.ing.se.DMO.JsonTranslator;
 import it.unibs.ing.se.model.Event;
 import it.unibs.ing.se.model.Notification;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.NoSuchElementException;
 import java.util.UUID;
 
@@ -15,6 +17,7 @@ public class NotificationHelper {
     private Connector dbConnection;
     private JsonTranslator translation;
     private Event event;
+    private String idempotencyKey; // Notification IDs are derived from it when set, random otherwise
 
     public NotificationHelper(UUID eventID) {
         this.translation = JsonTranslator.getInstance();
@@ -28,93 +31,94 @@ public class NotificationHelper {
     }
 
     /**
-     * This methods sends notifications basing only on event's current state.
-     * If called multiple times WILL send multiple duplicate notifications, so it has
-     * to be called only when appropriate (e.g. when event.updateState returns true)
+     * @param event An Event already read from the database, i.e. by Connector.getEvents
      */
-    void send() {
-        ArrayList<UUID> registeredUsers;
-        switch (event.getCurrentState()) {
+    public NotificationHelper(Event event) {
+        this.translation = JsonTranslator.getInstance();
+        dbConnection = Connector.getInstance();
+        this.event = event;
+    }
+
+    /**
+     * @param event An Event already read from the database, i.e. by Connector.getEvents
+     * @param idempotencyKey String identifying the fan-out, i.e. OutboxJob.getIdempotencyKey. Sending it again
+     *                       produces notifications with the same IDs, that the database skips
+     */
+    NotificationHelper(Event event, String idempotencyKey) {
+        this(event);
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Creates, without saving them, the notifications of an event reaching a state. They are saved by NotificationDispatcher
+     * @param state State of the event to notify users about
+     * @param registeredUsers Users registered to the event when it reached state, notified of CLOSED, FAILED and WITHDRAWN
+     * @return ArrayList of Notification objects - can be 0 elements long if nobody has to be notified
+     * @throws SQLException If a database access error occurs while looking for recipients
+     */
+    ArrayList<Notification> build(Event.State state, ArrayList<UUID> registeredUsers) throws SQLException {
+        HashMap<UUID, String> usernames;
+        ArrayList<Notification> notifications = new ArrayList<>();
+        switch (state) {
             case OPEN:
                 try { // Fire off notifications to all interested users
                     ArrayList<UUID> userIDs = dbConnection.getUserIDsByFavoriteCategory(event.getEventType());
+                    usernames = dbConnection.getUsernames(userIDs);
                     for (UUID userID : userIDs) {
-                        Notification newEventNotification = newEventFavoriteCategoryNotification(userID, dbConnection.getUsername(userID));
-                        dbConnection.insertNotification(newEventNotification);
+                        notifications.add(newEventFavoriteCategoryNotification(userID, usernames.get(userID)));
                     }
-                } catch (SQLException e) {
-                    System.err.println(translation.getTranslation("SQLError"));
-                    System.exit(1);
                 } catch (NoSuchElementException e) {
                     System.err.println(translation.getTranslation("nobodyInterestedInThisCategory"));
                 }
                 break;
             case WITHDRAWN:
-                registeredUsers = event.getRegisteredUsers();
+                usernames = dbConnection.getUsernames(registeredUsers);
                 for (UUID recipientID : registeredUsers) {
-                    try {
-                        Notification newNotification = withdrawnEventNotification(recipientID, dbConnection.getUsername(recipientID));
-                        dbConnection.insertNotification(newNotification);
-                    } catch (SQLException e) {
-                        System.err.println(translation.getTranslation("SQLError"));
-                        System.exit(1);
-                    }
+                    notifications.add(withdrawnEventNotification(recipientID, usernames.get(recipientID)));
                 }
                 break;
             case CLOSED:
-                String recipientUsername;
-                try {
-                    registeredUsers = event.getRegisteredUsers();
-                    double eventCost;
-                    if (! registeredUsers.contains(event.getCreatorID())) {
-                        String creatorUsername = dbConnection.getUsername(event.getCreatorID());
-                        ArrayList<UUID> creatorCosts = dbConnection.getOptionalCosts(event.getCreatorID(), event.getEventID());
-                        eventCost = event.totalCost(creatorCosts);
-                        // Probably the creator could not join the even due to a sex mismatch, but it has to be informed as well
-                        Notification newNotification = closedEventNotification(event.getCreatorID(), creatorUsername, eventCost);
-                        dbConnection.insertNotification(newNotification);
-                    }
-                    for (UUID recipientID : registeredUsers) {
-                        recipientUsername = dbConnection.getUsername(recipientID);
-                        ArrayList<UUID> userCosts = dbConnection.getOptionalCosts(recipientID, event.getEventID());
-                        eventCost = event.totalCost(userCosts);
-                        Notification newNotification = closedEventNotification(recipientID, recipientUsername, eventCost);
-                        dbConnection.insertNotification(newNotification);
-                    }
-                } catch (SQLException e) {
-                    System.err.println(translation.getTranslation("SQLError"));
-                    System.exit(1);
+                usernames = dbConnection.getUsernames(recipientsWithCreator(registeredUsers));
+                HashMap<UUID, ArrayList<UUID>> optionalCosts = dbConnection.getOptionalCostsByEvent(event.getEventID()); // Everyone's at once
+                double eventCost;
+                if (! registeredUsers.contains(event.getCreatorID())) {
+                    String creatorUsername = usernames.get(event.getCreatorID());
+                    ArrayList<UUID> creatorCosts = optionalCosts.getOrDefault(event.getCreatorID(), new ArrayList<>());
+                    eventCost = event.totalCost(creatorCosts);
+                    // Probably the creator could not join the even due to a sex mismatch, but it has to be informed as well
+                    notifications.add(closedEventNotification(event.getCreatorID(), creatorUsername, eventCost));
+                }
+                for (UUID recipientID : registeredUsers) {
+                    String recipientUsername = usernames.get(recipientID);
+                    ArrayList<UUID> userCosts = optionalCosts.getOrDefault(recipientID, new ArrayList<>());
+                    eventCost = event.totalCost(userCosts);
+                    notifications.add(closedEventNotification(recipientID, recipientUsername, eventCost));
                 }
                 break;
             case FAILED:
-                registeredUsers = event.getRegisteredUsers();
-                try {
-                    if (! registeredUsers.contains(event.getCreatorID())) {
-                        // Probably the creator could not join the even due to a sex mismatch, but it has to be informed as well
-                        Notification newNotification = failedEventNotification(event.getCreatorID(), dbConnection.getUsername(event.getCreatorID()));
-                        dbConnection.insertNotification(newNotification);
-                    }
-                    for (UUID recipientID : registeredUsers) {
-                        Notification newNotification = failedEventNotification(recipientID, dbConnection.getUsername(recipientID));
-                        dbConnection.insertNotification(newNotification);
-                    }
-                } catch (SQLException e) {
-                    System.err.println(translation.getTranslation("SQLError"));
-                    System.exit(1);
+                usernames = dbConnection.getUsernames(recipientsWithCreator(registeredUsers));
+                if (! registeredUsers.contains(event.getCreatorID())) {
+                    // Probably the creator could not join the even due to a sex mismatch, but it has to be informed as well
+                    notifications.add(failedEventNotification(event.getCreatorID(), usernames.get(event.getCreatorID())));
+                }
+                for (UUID recipientID : registeredUsers) {
+                    notifications.add(failedEventNotification(recipientID, usernames.get(recipientID)));
                 }
                 break;
         }
+        return notifications;
     }
 
     public void sendInvites() {
         try { // Fire off notifications to all previously registered users
             ArrayList<UUID> userIDs = dbConnection.getUserIDByOldRegistrations(event.getCreatorID(), event.getEventType());
-            String creatorUsername;
+            HashMap<UUID, String> usernames = dbConnection.getUsernames(recipientsWithCreator(userIDs));
+            String creatorUsername = usernames.get(event.getCreatorID());
+            ArrayList<Notification> notifications = new ArrayList<>();
             for (UUID userID : userIDs) {
-                creatorUsername = dbConnection.getUsername(event.getCreatorID());
-                Notification newEventNotification = newInviteNotification(userID, dbConnection.getUsername(userID), creatorUsername);
-                dbConnection.insertNotification(newEventNotification);
+                notifications.add(newInviteNotification(userID, usernames.get(userID), creatorUsername));
             }
+            dbConnection.insertNotifications(notifications); // The whole fan-out is a single transaction
         } catch (SQLException e) {
             System.err.println(translation.getTranslation("SQLError"));
             System.exit(1);
@@ -125,6 +129,26 @@ public class NotificationHelper {
 
     }
 
+    /**
+     * @param recipientIDs UUIDs of the users to notify
+     * @return A new list with recipientIDs and event's creator, to resolve all the needed usernames at once
+     */
+    private ArrayList<UUID> recipientsWithCreator(ArrayList<UUID> recipientIDs) {
+        ArrayList<UUID> userIDs = new ArrayList<>(recipientIDs);
+        userIDs.add(event.getCreatorID());
+        return userIDs;
+    }
+
+    /**
+     * @param recipientID UUID of the user to send the notification to
+     * @return A new random UUID, or the same UUID every time the same fan-out reaches the same user if idempotencyKey is set
+     */
+    private UUID newNotificationID(UUID recipientID) {
+        if (idempotencyKey == null)
+            return UUID.randomUUID();
+        return UUID.nameUUIDFromBytes((idempotencyKey + "/" + recipientID).getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * Creates a Notification object with strings related to an event being CLOSED with the needed number of participants
      * @param recipientID UUID of the user to send the notification to
@@ -135,7 +159,7 @@ public class NotificationHelper {
         StringBuilder sb = new StringBuilder();
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern(" yyyy-MM-dd HH:mm ");
 
-        UUID notificationID = UUID.randomUUID();
+        UUID notificationID = newNotificationID(recipientID);
         UUID eventID = event.getEventID();
         boolean read = false;
         String title = String.format(translation.getTranslation("eventSuccessTitle"), event.title);
@@ -160,7 +184,7 @@ public class NotificationHelper {
      * @return Notification object with all the values instantiated
      */
     private Notification failedEventNotification(UUID recipientID, String recipientUsername) {
-        UUID notificationID = UUID.randomUUID();
+        UUID notificationID = newNotificationID(recipientID);
         UUID eventID = event.getEventID();
         boolean read = false;
         String title = String.format(translation.getTranslation("eventFailTitle"), event.title);
@@ -176,7 +200,7 @@ public class NotificationHelper {
      * @return Notification object with all the values instantiated
      */
     private Notification withdrawnEventNotification(UUID recipientID, String recipientUsername) {
-        UUID notificationID = UUID.randomUUID();
+        UUID notificationID = newNotificationID(recipientID);
         UUID eventID = event.getEventID();
         boolean read = false;
         String title = String.format(translation.getTranslation("eventWithdrawnTitle"), event.title);
@@ -192,7 +216,7 @@ public class NotificationHelper {
      * @return Notification object with all the values instantiated
      */
     private Notification newEventFavoriteCategoryNotification(UUID recipientID, String recipientUsername) {
-        UUID notificationID = UUID.randomUUID();
+        UUID notificationID = newNotificationID(recipientID);
         UUID eventID = event.getEventID();
         boolean read = false;
         String title = translation.getTranslation("eventFavoriteCategoryTitle");
@@ -209,7 +233,7 @@ public class NotificationHelper {
      * @return Notification object with all the values instantiated
      */
     private Notification newInviteNotification(UUID recipientID, String recipientUsername, String senderUsername) {
-        UUID notificationID = UUID.randomUUID();
+        UUID notificationID = newNotificationID(recipientID);
         UUID eventID = event.getEventID();
         boolean read = false;
         String title = translation.getTranslation("eventInviteTitle");
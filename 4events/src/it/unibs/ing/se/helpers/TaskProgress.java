@@ -0,0 +1,33 @@
+package it.unibs.ing.se.helpers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of a task running in background, updated by the task and read by views.
+ */
+public class TaskProgress {
+    private final AtomicInteger done = new AtomicInteger();
+    private volatile int total;
+    private volatile boolean finished;
+
+    /**
+     * @param total Number of steps the task will perform, now that it knows it
+     */
+    public void setTotal(int total) { this.total = total; }
+
+    /**
+     * Marks one more step as performed
+     */
+    public void advance() { done.incrementAndGet(); }
+
+    /**
+     * Marks the task as completed, whatever the number of performed steps
+     */
+    public void finish() { finished = true; }
+
+    public int getDone() { return done.get(); }
+
+    public int getTotal() { return total; }
+
+    public boolean isFinished() { return finished; }
+}
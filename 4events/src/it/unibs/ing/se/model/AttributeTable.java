@@ -0,0 +1,151 @@
+package it.unibs.ing.se.model;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Immutable description of the user-controlled (public) attributes of a class, computed once per class.
+ * Attributes are listed as getAttributesWithType always did: public fields of the father class first, then the class' own ones.
+ * A field is mandatory when its name is in a static MANDATORY_FIELDS String array declared by the class or one of its fathers.
+ */
+public final class AttributeTable implements Iterable<AttributeTable.Attribute> {
+    private final static MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private final static MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final static ClassValue<AttributeTable> TABLES = new ClassValue<AttributeTable>() {
+        @Override
+        protected AttributeTable computeValue(Class<?> type) {
+            return new AttributeTable(type);
+        }
+    };
+
+    public static final class Attribute {
+        private final String name;
+        private final Class<?> type;
+        private final Class<?> declaringClass;
+        private final boolean optional;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private Attribute(Field field, boolean optional) throws IllegalAccessException {
+            this.name = field.getName();
+            this.type = field.getType();
+            this.declaringClass = field.getDeclaringClass();
+            this.optional = optional;
+            this.getter = MethodHandles.publicLookup().unreflectGetter(field).asType(GETTER_TYPE);
+            this.setter = MethodHandles.publicLookup().unreflectSetter(field).asType(SETTER_TYPE);
+        }
+
+        public String getName() { return name; }
+
+        public Class<?> getType() { return type; }
+
+        public Class<?> getDeclaringClass() { return declaringClass; }
+
+        public boolean isOptional() { return optional; }
+
+        /**
+         * @param target Object owning the attribute
+         * @return Current value of the attribute in target, can be null
+         */
+        public Object get(Object target) {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable t) {
+                throw new IllegalStateException("ALERT: Illegal access on field: " + name, t);
+            }
+        }
+
+        /**
+         * @param target Object owning the attribute
+         * @param content New value of the attribute
+         * @throws ClassCastException If content is not of the attribute type
+         */
+        public void set(Object target, Object content) throws ClassCastException {
+            try {
+                setter.invokeExact(target, content);
+            } catch (ClassCastException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("ALERT: Illegal access on field: " + name, t);
+            }
+        }
+    }
+
+    private final Attribute[] attributes;
+    private final HashMap<String, Attribute> attributesByName;
+
+    private AttributeTable(Class<?> type) {
+        Set<String> mandatoryFields = mandatoryFields(type);
+        ArrayList<Field> fields = new ArrayList<>();
+        if (type.getSuperclass() != null)
+            fields.addAll(Arrays.asList(type.getSuperclass().getFields())); // Only public fields
+        for (Field field : type.getDeclaredFields()) // Both public and private fields
+            if (field.getModifiers() == Modifier.PUBLIC) // Filter out only public fields
+                fields.add(field);
+
+        attributes = new Attribute[fields.size()];
+        attributesByName = new HashMap<>();
+        for (int i = 0; i < attributes.length; i++) {
+            Field field = fields.get(i);
+            try {
+                attributes[i] = new Attribute(field, !mandatoryFields.contains(field.getName()));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("ALERT: Illegal access on field: " + field.getName(), e);
+            }
+            attributesByName.put(attributes[i].name, attributes[i]);
+        }
+    }
+
+    /**
+     * @param type A class with public attributes, i.e. an Event or EventInput subclass
+     * @return The AttributeTable of type, computed on first use
+     */
+    public static AttributeTable of(Class<?> type) {
+        return TABLES.get(type);
+    }
+
+    /**
+     * Collects the MANDATORY_FIELDS arrays of type and all its fathers
+     */
+    private static Set<String> mandatoryFields(Class<?> type) {
+        HashSet<String> mandatoryFields = new HashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField("MANDATORY_FIELDS");
+                if (!Modifier.isStatic(field.getModifiers()) || !field.getType().equals(String[].class))
+                    continue;
+                field.setAccessible(true); // It's private to its class
+                mandatoryFields.addAll(Arrays.asList((String[]) field.get(null)));
+            } catch (NoSuchFieldException e) {
+                // This class does not add mandatory fields
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("ALERT: Illegal access on MANDATORY_FIELDS of " + c.getName(), e);
+            }
+        }
+        return mandatoryFields;
+    }
+
+    public int size() { return attributes.length; }
+
+    /**
+     * @param index Position of the attribute, starting at 0
+     * @return The attribute at index
+     */
+    public Attribute get(int index) { return attributes[index]; }
+
+    /**
+     * @param name Name of the attribute
+     * @return The attribute with the given name, null if there isn't such a public attribute
+     */
+    public Attribute get(String name) { return attributesByName.get(name); }
+
+    @Override
+    public Iterator<Attribute> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(attributes)).iterator();
+    }
+}
@@ -1,7 +1,6 @@
 package it.unibs.ing.se.model;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.time.Duration;
 import java.util.*;
 import java.time.LocalDateTime;
@@ -30,6 +29,7 @@ public abstract class Event implements LegalObject, ReflectionInterface {
     private ArrayList<UUID> registeredUsers;
     private State           currentState;
     private int             participantsMax;
+    private int             version; // Incremented by the database on every change, used to detect concurrent updates
     /* Following fields are public to emphasize the fact that are user-controlled */
     public  String          title;
     public  Integer         participantsMin;
@@ -44,6 +44,8 @@ public abstract class Event implements LegalObject, ReflectionInterface {
     public  LocalDateTime   endDate;
     public  String          notes;
 
+    private static final String[] MANDATORY_FIELDS = {"participantsMin", "registrationDeadline", "location", "startDate", "cost"};
+
     /**
      * This empty constructor has to be used ONLY for dummy objects, such as those used to print field names in help section.
      * If used for Event Objects that will be manipulated, it WILL lead to NullPointerExceptions
@@ -203,6 +205,14 @@ public abstract class Event implements LegalObject, ReflectionInterface {
 
     public int getParticipantsMax() { return participantsMax; }
 
+    public int getVersion() { return version; }
+
+    /**
+     * Setter that has to be used ONLY to restore an event from the database.
+     * @param version Version of the row the event was read from
+     */
+    public void setVersion(int version) { this.version = version; }
+
     public void setParticipantsMax(int participantsMax) { this.participantsMax = participantsMax; }
 
     /**
@@ -261,7 +271,8 @@ public abstract class Event implements LegalObject, ReflectionInterface {
                 break;
 
             case CLOSED:
-                if (registeredUsers.size() < participantsMax) {
+                if (registeredUsers.size() < participantsMax &&
+                        (currentDateTime.isBefore(registrationDeadline) || currentDateTime.equals(registrationDeadline))) {
                     // A user has withdrawn and the event is again open for new participants
                     this.currentState = State.OPEN;
                     return true;
@@ -292,6 +303,27 @@ public abstract class Event implements LegalObject, ReflectionInterface {
         return false;
     }
 
+    /**
+     * Tells when time alone will next change this event's state, as checked by updateState
+     * @return The last date at which the current state still holds: updateState has to be called right after it.
+     *         Null if the state can only change because of users' actions, or not at all
+     */
+    public LocalDateTime getNextStateChangeDate() {
+        switch (currentState) {
+            case OPEN:
+                return registrationDeadline; // Goes CLOSED or FAILED
+            case CLOSED:
+                if (endDate != null)
+                    return endDate;
+                else if (duration != null)
+                    return startDate.plus(duration);
+                else
+                    return startDate.plusDays(1); // As of client request
+            default:
+                return null;
+        }
+    }
+
     /**
      * A method to get the fields of a class and its fathers
      * @return a LinkedHashMap with a String as a key and a Class<?> as Value
@@ -299,27 +331,10 @@ public abstract class Event implements LegalObject, ReflectionInterface {
      *   - Value is the internal type of the field
      */
     public LinkedHashMap<String, Class<?>> getAttributesWithType(){
-        Field[] superFields = this.getClass().getSuperclass().getFields(); // Only public fields
-        Field[] thisFields = this.getClass().getDeclaredFields(); // Both public and private fields
-
+        AttributeTable attributeTable = getAttributeTable();
         LinkedHashMap<String, Class<?>> returnFields = new LinkedHashMap<>();
-
-        for (Field field:superFields) {
-            /*
-             * Following line return only the name of the field instead of full class name + field.
-             * It gets the last occurrence of the '.' char, add 1 to it (to exclude the dot itself)
-             * and then trims the string gotten from the reflection.
-             */
-            String fieldName = field.toString().substring( field.toString().lastIndexOf('.') + 1 );
-            returnFields.put(fieldName, field.getType());
-        }
-        for (Field field:thisFields) {
-            if (field.getModifiers() == Modifier.PUBLIC) { // Filter out only public fields
-                // Same goes for this line
-                String fieldName = field.toString().substring( field.toString().lastIndexOf('.') + 1 );
-                returnFields.put(fieldName, field.getType());
-            }
-        }
+        for (int i = 0; i < attributeTable.size(); i++)
+            returnFields.put(attributeTable.get(i).getName(), attributeTable.get(i).getType());
         return returnFields;
     }
 
@@ -330,38 +345,12 @@ public abstract class Event implements LegalObject, ReflectionInterface {
      *   - Value is an Object with current value of a field
      */
     public LinkedHashMap<String, Object> getNonNullAttributesWithValue() {
-        Field[] superFields = this.getClass().getSuperclass().getFields(); // Only public fields
-        Field[] thisFields = this.getClass().getDeclaredFields(); // Both public and private fields
-
+        AttributeTable attributeTable = getAttributeTable();
         LinkedHashMap<String, Object> returnFields = new LinkedHashMap<>();
-
-        for (Field field:superFields) {
-            /*
-             * Following line return only the name of the field instead of full class name + field.
-             * It gets the last occurrence of the '.' char, add 1 to it (to exclude the dot itself)
-             * and then trims the string gotten from the reflection.
-             */
-            try {
-                if (field.get(this) != null) {
-                    String fieldName = field.toString().substring(field.toString().lastIndexOf('.') + 1);
-                    returnFields.put(fieldName, field.get(this));
-                }
-            } catch (IllegalAccessException e) {
-                System.out.println("ALERT: Illegal access on field: " + field);
-                e.printStackTrace();
-            }
-        }
-        for (Field field:thisFields) {
-            try {
-                if (field.getModifiers() == Modifier.PUBLIC && field.get(this) != null) { // Filter out only public fields
-                    // Same goes for this line
-                    String fieldName = field.toString().substring( field.toString().lastIndexOf('.') + 1 );
-                    returnFields.put(fieldName, field.get(this));
-                }
-            } catch (IllegalAccessException e) {
-                System.out.println("ALERT: Illegal access on field: " + field);
-                e.printStackTrace();
-            }
+        for (int i = 0; i < attributeTable.size(); i++) {
+            Object value = attributeTable.get(i).get(this);
+            if (value != null)
+                returnFields.put(attributeTable.get(i).getName(), value);
         }
         return returnFields;
     }
@@ -370,8 +359,13 @@ public abstract class Event implements LegalObject, ReflectionInterface {
      * A method to set a field to a given object passed from the caller
      */
     public void setAttribute(String fieldName, Object content) {
-        try {
-            Field field = this.getClass().getSuperclass().getDeclaredField( fieldName ); // Need to get the super class as this is an ancestor of real instance classes
+        AttributeTable.Attribute attribute = getAttributeTable().get(fieldName);
+        if (attribute != null) {
+            attribute.set(this, content);
+            return;
+        }
+        try { // Not a public attribute, it can still be one of Event's private fields
+            Field field = Event.class.getDeclaredField( fieldName );
             field.set(this, content);
         } catch (NoSuchFieldException e) {
             System.out.println("ALERT: Missing field: " + fieldName);
@@ -382,6 +376,14 @@ public abstract class Event implements LegalObject, ReflectionInterface {
         }
     }
 
+    /**
+     * A method to check if a field is mandatory or optional
+     */
+    public boolean isOptional(String fieldName) {
+        AttributeTable.Attribute attribute = getAttributeTable().get(fieldName);
+        return attribute == null || attribute.isOptional();
+    }
+
     /**
      * A method to check if the values input by an user are logically valid, used before saving to the DB.
      * Subclasses should override and call this method with relevant checks.
@@ -406,6 +408,22 @@ public abstract class Event implements LegalObject, ReflectionInterface {
         return true;
     }
 
+    /**
+     * A method to get an independent copy of an event, i.e. to hand out an event kept in memory to callers that change it
+     * @return An Event of the same subclass with the same values. Changing one of them does not affect the other
+     */
+    public Event copy() {
+        Event returnEvent = new EventFactory().createEvent(eventID, creatorID, eventType);
+        for (AttributeTable.Attribute attribute : getAttributeTable())
+            attribute.set(returnEvent, attribute.get(this)); // All field types are immutable (Sex and OptionalCost included), they can be shared
+        returnEvent.published = published;
+        returnEvent.registeredUsers = new ArrayList<>(registeredUsers);
+        returnEvent.currentState = currentState;
+        returnEvent.participantsMax = participantsMax;
+        returnEvent.version = version;
+        return returnEvent;
+    }
+
     @Override
     public String toString () {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,54 @@
+package it.unibs.ing.se.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only subset of an Event, with what listings show about it.
+ * Much lighter than an Event: no category specific fields and a count instead of the registered users.
+ */
+public class EventSummary {
+    private final UUID eventID;
+    private final String eventType;
+    private final String title;
+    private final UUID creatorID;
+    private final String creatorUsername;
+    private final Event.State currentState;
+    private final LocalDateTime registrationDeadline;
+    private final LocalDateTime startDate;
+    private final int registeredCount;
+
+    public EventSummary(UUID eventID, String eventType, String title, UUID creatorID, String creatorUsername, Event.State currentState,
+                        LocalDateTime registrationDeadline, LocalDateTime startDate, int registeredCount) {
+        this.eventID = eventID;
+        this.eventType = eventType;
+        this.title = title;
+        this.creatorID = creatorID;
+        this.creatorUsername = creatorUsername;
+        this.currentState = currentState;
+        this.registrationDeadline = registrationDeadline;
+        this.startDate = startDate;
+        this.registeredCount = registeredCount;
+    }
+
+    public UUID getEventID() { return eventID; }
+
+    public String getEventType() { return eventType; }
+
+    public String getTitle() { return title; }
+
+    public UUID getCreatorID() { return creatorID; }
+
+    /**
+     * @return Username of the creator, null if it couldn't be found
+     */
+    public String getCreatorUsername() { return creatorUsername; }
+
+    public Event.State getCurrentState() { return currentState; }
+
+    public LocalDateTime getRegistrationDeadline() { return registrationDeadline; }
+
+    public LocalDateTime getStartDate() { return startDate; }
+
+    public int getRegisteredCount() { return registeredCount; }
+}
@@ -2,7 +2,6 @@ package it.unibs.ing.se.model;
 
 import it.unibs.ing.se.model.fields.OptionalCost;
 
-import java.lang.reflect.Field;
 import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
 import java.util.UUID;
@@ -15,7 +14,7 @@ public class MountainHiking extends Event implements LegalObject, ReflectionInte
     public OptionalCost lunch;
 
     private static final String eventType = "mountain_hiking";
-    private final String[] mandatoryFields = {"length", "heightDiff"};
+    private static final String[] MANDATORY_FIELDS = {"length", "heightDiff"};
 
     static String getClassEventType() { return eventType; } // Static method to know how all the events of this type are saved in the DB
 
@@ -31,21 +30,6 @@ public class MountainHiking extends Event implements LegalObject, ReflectionInte
         super(eventID, creatorID, eventType);
     }
 
-    /**
-     * A method to set a field to a given object passed from the caller
-     */
-    public void setAttribute(String fieldName, Object content) {
-        try {
-            Field field = this.getClass().getDeclaredField(fieldName); // If the field is not owned by this class, then...
-            field.set(this, content);
-        } catch (NoSuchFieldException e) {
-            super.setAttribute(fieldName, content); // ... Search for it in the super class
-        } catch (IllegalAccessException e) {
-            System.out.println("ALERT: Illegal access on field: " + fieldName);
-            e.printStackTrace();
-        }
-    }
-
     /**
      * Gets the available OptionalCosts for this event
      * @return a LinkedHashMap with a String as a key and a OptionalCost as Value
@@ -1,6 +1,7 @@
 package it.unibs.ing.se.model;
 
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 public class Notification {
@@ -10,6 +11,7 @@ public class Notification {
     private boolean read;
     private String title;
     private String content;
+    private LocalDateTime createdAt; // Set by the database on insert, null for notifications not stored yet
 
     public Notification(UUID notificationID, UUID eventID, UUID recipientID, boolean read, String title, String content) {
         this.notificationID = notificationID;
@@ -20,6 +22,11 @@ public class Notification {
         this.content = content;
     }
 
+    public Notification(UUID notificationID, UUID eventID, UUID recipientID, boolean read, String title, String content, LocalDateTime createdAt) {
+        this(notificationID, eventID, recipientID, read, title, content);
+        this.createdAt = createdAt;
+    }
+
     public UUID getNotificationID() {
         return notificationID;
     }
@@ -42,6 +49,8 @@ public class Notification {
         return content;
     }
 
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
     public void setEventID(UUID eventID) {
         this.eventID = eventID;
     }
@@ -3,6 +3,14 @@ package it.unibs.ing.se.model;
 import java.util.LinkedHashMap;
 
 public interface ReflectionInterface {
+    /**
+     * Gives direct access to the descriptors of this class' public attributes, without building maps
+     * @return The AttributeTable of the runtime class of this object
+     */
+    default AttributeTable getAttributeTable() {
+        return AttributeTable.of(getClass());
+    }
+
     /**
      * A method to set a class' attribute to a given object passed from the caller
      */
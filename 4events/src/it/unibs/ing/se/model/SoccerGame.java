@@ -3,7 +3,6 @@ package it.unibs.ing.se.model;
 import it.unibs.ing.se.model.fields.OptionalCost;
 import it.unibs.ing.se.model.fields.Sex;
 
-import java.lang.reflect.Field;
 import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
 import java.util.UUID;
@@ -14,7 +13,7 @@ public class SoccerGame extends Event implements LegalObject, ReflectionInterfac
     public Integer  ageMax;
 
     private static final String eventType = "soccer_game";
-    private final String[] mandatoryFields = {"gender", "ageMin", "ageMax"};
+    private static final String[] MANDATORY_FIELDS = {"gender", "ageMin", "ageMax"};
 
     static String getClassEventType() { return eventType; } // Static method to know how all the events of this type are saved in the DB
 
@@ -30,21 +29,6 @@ public class SoccerGame extends Event implements LegalObject, ReflectionInterfac
         super(eventID, creatorID, eventType);
     }
 
-    /**
-     * A method to set a field to a given object passed from the caller
-     */
-    public void setAttribute(String fieldName, Object content) {
-        try {
-            Field field = this.getClass().getDeclaredField(fieldName); // If the field is not owned by this class, then...
-            field.set(this, content);
-        } catch (NoSuchFieldException e) {
-            super.setAttribute(fieldName, content); // ... Search for it in the super class
-        } catch (IllegalAccessException e) {
-            System.out.println("ALERT: Illegal access on field: " + fieldName);
-            e.printStackTrace();
-        }
-    }
-
     /**
      * Gets the available OptionalCosts for this event, which are none, so returns null
      * @return null
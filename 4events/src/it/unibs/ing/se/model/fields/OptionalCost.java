@@ -2,9 +2,12 @@ package it.unibs.ing.se.model.fields;
 
 import java.util.UUID;
 
-public class OptionalCost {
-    private UUID costID;
-    private Integer costAmount;
+/**
+ * A cost users can choose to pay when registering to an event. Immutable, so events can share it, see Event.copy
+ */
+public final class OptionalCost {
+    private final UUID costID;
+    private final Integer costAmount;
 
     public OptionalCost(UUID costID, Integer costAmount) {
         if (costAmount < 0)
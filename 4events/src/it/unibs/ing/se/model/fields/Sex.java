@@ -1,10 +1,10 @@
 package it.unibs.ing.se.model.fields;
 
-public class Sex {
+public final class Sex { // Immutable, so events can share it, see Event.copy
     public static final Character MALE = 'M';
     public static final Character FEMALE = 'F';
 
-    private char sex;
+    private final char sex;
 
     public Sex (Character sex) throws IllegalStateException {
         if (sex != MALE && sex != FEMALE)
@@ -2,12 +2,10 @@ package it.unibs.ing.se.view;
 
 import it.unibs.ing.se.DMO.Connector;
 import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.model.AttributeTable;
 import it.unibs.ing.se.model.Event;
 
 import java.sql.SQLException;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.UUID;
 
 abstract public class AbstractEventDetailsView<K> implements PrintableInterface<K> {
@@ -59,13 +57,10 @@ abstract public class AbstractEventDetailsView<K> implements PrintableInterface<
         String eventState = translation.getTranslation(event.getCurrentState().name());
         sb.append(translation.getName("state")).append(": ").append(eventState).append('\n');
 
-        Iterator iterator;
-        LinkedHashMap<String, Object> setAttributes = event.getNonNullAttributesWithValue(); // Map with all currently valid attributes
-        iterator = setAttributes.entrySet().iterator(); // Get an iterator for our map
-
-        while(iterator.hasNext()) {
-            Map.Entry entry = (Map.Entry)iterator.next(); // Casts the iterated item to a Map Entry to use it as such
-            sb.append(translation.getName((String) entry.getKey())).append(": ").append(entry.getValue()).append("\n");
+        for (AttributeTable.Attribute attribute : event.getAttributeTable()) {
+            Object value = attribute.get(event);
+            if (value != null) // Only currently valid attributes
+                sb.append(translation.getName(attribute.getName())).append(": ").append(value).append("\n");
         }
         return sb.toString();
     }
@@ -1,8 +1,9 @@
 package it.unibs.ing.se.view;
 
 import it.unibs.ing.se.DMO.Connector;
+import it.unibs.ing.se.DMO.EventCursor;
 import it.unibs.ing.se.DMO.JsonTranslator;
-import it.unibs.ing.se.model.Event;
+import it.unibs.ing.se.model.EventSummary;
 
 import java.sql.SQLException;
 import java.util.*;
@@ -11,6 +12,8 @@ abstract public class AbstractEventsView implements PrintableInterface<UUID> {
     protected JsonTranslator translation;
     protected Connector dbConnection;
     protected ArrayList<UUID> eventIDs;
+    protected EventCursor nextCursor; // Set by views that list events a page at a time, null if there is no next page
+    protected EventCursor previousCursor; // Same, for the previous page
 
     AbstractEventsView() {
         dbConnection = Connector.getInstance();
@@ -22,29 +25,70 @@ abstract public class AbstractEventsView implements PrintableInterface<UUID> {
      */
     abstract void createWorkingSet();
 
+    /**
+     * Replaces eventIDs with another page of events. Views that page their events override this and set the cursors.
+     * Views that list all their events at once leave both cursors null, so changePage never calls this; should it
+     * happen anyway, the whole list is simply kept and printed again
+     * @param cursor nextCursor or previousCursor
+     */
+    void loadPage(EventCursor cursor) { }
+
+    /**
+     * Asks the user whether to move to the next or the previous page, if any, and loads it
+     * @return True if a new page has been loaded and has to be printed
+     */
+    public boolean changePage() {
+        if (nextCursor == null && previousCursor == null)
+            return false;
+        String prompt;
+        if (nextCursor != null && previousCursor != null)
+            prompt = translation.getTranslation("eventsPageNextOrPrevious");
+        else if (nextCursor != null)
+            prompt = translation.getTranslation("eventsPageNext");
+        else
+            prompt = translation.getTranslation("eventsPagePrevious");
+
+        Character userInput = InputManager.inputChar(prompt, true);
+        if (userInput == null)
+            return false; // Stay on this page and choose an event
+        userInput = Character.toUpperCase(userInput);
+        if (userInput == 'S' && nextCursor != null) {
+            loadPage(nextCursor);
+            return true;
+        } else if (userInput == 'P' && previousCursor != null) {
+            loadPage(previousCursor);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public void print() {
-        if (eventIDs == null) {
+        if (eventIDs == null || eventIDs.isEmpty()) {
             System.out.println(translation.getTranslation("noEventsInDB"));
             return;
         }
 
-        Event event = null;
+        LinkedHashMap<UUID, EventSummary> summaries = null;
+        try {
+            summaries = dbConnection.getEventSummaries(eventIDs); // Whole listing in a single query
+        } catch (SQLException e) {
+            System.err.println(translation.getTranslation("SQLError"));
+            System.exit(1);
+        }
+
         for (int i = 0; i < eventIDs.size(); i++) {
-            try {
-                event = dbConnection.getEvent(eventIDs.get(i));
-            } catch (SQLException e) {
-                System.err.println(translation.getTranslation("SQLError"));
-                System.exit(1);
-            }
-
-            System.out.println((i + 1) + ") " + synopsis(event));
+            EventSummary summary = summaries.get(eventIDs.get(i));
+            if (summary == null) // Deleted in the meantime
+                continue;
+
+            System.out.println((i + 1) + ") " + synopsis(summary));
         }
     }
 
     @Override
     public UUID parseInput() {
-        if (eventIDs == null) {
+        if (eventIDs == null || eventIDs.isEmpty()) {
             return null;
         }
 
@@ -59,19 +103,16 @@ abstract public class AbstractEventsView implements PrintableInterface<UUID> {
 
     /**
      * A short event description with: title, creator's username, registrationDeadline and start date
-     * @param event The Event object to describe
+     * @param event The EventSummary of the event to describe
      * @return Short description string
      */
-    private String synopsis (Event event) {
-        String creatorUsername;
+    private String synopsis (EventSummary event) {
+        String creatorUsername = event.getCreatorUsername();
         StringBuilder sb = new StringBuilder();
         sb.append(translation.getName(event.getEventType())).append('\n');
         sb.append(translation.getName("title")).append(": ").append(event.getTitle()).append('\n');
-        try {
-            creatorUsername = dbConnection.getUsername(event.getCreatorID());
-        } catch (SQLException | IllegalArgumentException e) {
+        if (creatorUsername == null)
             creatorUsername = "Error fetching username";
-        }
         sb.append(translation.getName("creator")).append(": ").append(creatorUsername).append('\t');
         String eventState = translation.getTranslation(event.getCurrentState().name());
         sb.append(translation.getName("state")).append(": ").append(eventState).append('\n');
@@ -2,14 +2,12 @@ package it.unibs.ing.se.view;
 
 import it.unibs.ing.se.DMO.Connector;
 import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.model.AttributeTable;
 import it.unibs.ing.se.model.Event;
 import it.unibs.ing.se.model.EventFactory;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 public class HelpView {
     private JsonTranslator translation;
@@ -41,25 +39,19 @@ public class HelpView {
 
             event = eFactory.createEvent(internalCatName);
 
-            LinkedHashMap<String, Class<?>> eventFieldsMap = event.getAttributesWithType();
+            AttributeTable attributeTable = event.getAttributeTable();
 
-            Iterator iterator = eventFieldsMap.entrySet().iterator(); // Get an iterator for our map
-
-            while (iterator.hasNext()) {
-                Map.Entry entry = (Map.Entry) iterator.next(); // Casts the iterated item to a Map Entry to use it as such
-
-                int length = translation.getName((String) entry.getKey()).length();
+            for (AttributeTable.Attribute attribute : attributeTable) {
+                int length = translation.getName(attribute.getName()).length();
                 if (length > maxLength)
                     maxLength = length; // ...find the longest
             }
 
             maxLength += 3; // Add some more char to allow spacing between the longest name and its description
-            iterator = eventFieldsMap.entrySet().iterator(); // Reset to first element
             StringBuffer outputBuffer = new StringBuffer();
 
-            while (iterator.hasNext()) {
-                Map.Entry entry = (Map.Entry) iterator.next(); // Casts the iterated item to a Map Entry to use it as such
-                String field = (String) entry.getKey();
+            for (AttributeTable.Attribute attribute : attributeTable) {
+                String field = attribute.getName();
 
                 outputBuffer.append("  ");
                 outputBuffer.append(translation.getName(field));
@@ -2,6 +2,7 @@ package it.unibs.ing.se.view;
 
 import it.unibs.ing.se.DMO.Connector;
 import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.helpers.TaskProgress;
 
 import it.unibs.ing.se.view.commands.MainCommand;
 
@@ -12,6 +13,7 @@ public class MainMenuView implements PrintableInterface<MainCommand> {
     private JsonTranslator translation;
     private Connector dbConnection;
     private UUID currentUserID;
+    private TaskProgress eventsUpdate;
     private MainCommand[] mainCommands = MainCommand.values();
 
     /**
@@ -23,6 +25,15 @@ public class MainMenuView implements PrintableInterface<MainCommand> {
         this.currentUserID = currentUserID;
     }
 
+    /**
+     * @param currentUserID User object of current user
+     * @param eventsUpdate Progress of the events update running in background, shown until it is finished
+     */
+    public MainMenuView(UUID currentUserID, TaskProgress eventsUpdate) {
+        this(currentUserID);
+        this.eventsUpdate = eventsUpdate;
+    }
+
     /**
      * Prints available options (took from MainCommands)
      */
@@ -39,6 +50,8 @@ public class MainMenuView implements PrintableInterface<MainCommand> {
 
         String header = String.format(translation.getTranslation("mainMenuHeader"), username, unreadNotificationsNum);
         System.out.println(header);
+        if (eventsUpdate != null && !eventsUpdate.isFinished())
+            System.out.println(String.format(translation.getTranslation("eventsUpdateInProgress"), eventsUpdate.getDone(), eventsUpdate.getTotal()));
 
         StringBuilder sb = new StringBuilder();
         for (int i = 1; i < mainCommands.length; i++) {
@@ -2,14 +2,12 @@ package it.unibs.ing.se.view;
 
 import it.unibs.ing.se.DMO.Connector;
 import it.unibs.ing.se.DMO.JsonTranslator;
+import it.unibs.ing.se.model.AttributeTable;
 import it.unibs.ing.se.view.inputwrappers.EventInput;
 import it.unibs.ing.se.view.inputwrappers.EventInputFactory;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 public class NewEventView implements PrintableInterface<EventInput> {
     private JsonTranslator translation;
@@ -56,21 +54,15 @@ public class NewEventView implements PrintableInterface<EventInput> {
         EventInputFactory eFactory = new EventInputFactory();
         EventInput event = eFactory.createEvent(categories.get(userSelection - 1));
 
-        LinkedHashMap<String, Class<?>> eventFieldsMap = event.getAttributesWithType();
-
-        Iterator iterator = eventFieldsMap.entrySet().iterator(); // Get an iterator for our map
-
-        while(iterator.hasNext()) {
-            Map.Entry entry = (Map.Entry)iterator.next(); // Casts the iterated item to a Map Entry to use it as such
-
+        for (AttributeTable.Attribute attribute : event.getAttributeTable()) {
             boolean validUserInput = false;
             do {
-                String inputDescription = translation.getName((String) entry.getKey());
-                Object userInput = InputManager.genericInput(inputDescription, (Class) entry.getValue(), true);
+                String inputDescription = translation.getName(attribute.getName());
+                Object userInput = InputManager.genericInput(inputDescription, attribute.getType(), true);
                 if (userInput == null) {
-                    validUserInput = event.isOptional((String) entry.getKey());
+                    validUserInput = attribute.isOptional();
                 } else {
-                    event.setAttribute((String) entry.getKey(), userInput);
+                    attribute.set(event, userInput);
                     validUserInput = true;
                 }
             } while (!validUserInput);
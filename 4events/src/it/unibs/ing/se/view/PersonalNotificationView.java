@@ -9,24 +9,64 @@ import java.util.ArrayList;
 import java.util.UUID;
 
 public class PersonalNotificationView implements PrintableInterface<ArrayList<UUID>> {
+    private final static int PAGE_SIZE = 20;
+
     private JsonTranslator translation;
     private Connector dbConnection;
-    private ArrayList<UUID> notificationsIDs;
+    private UUID currentUserID;
+    private ArrayList<Notification> notifications; // Notifications of the current page, newest first
+    private boolean hasNextPage;
 
     public PersonalNotificationView(UUID currentUserID) {
         this.translation = JsonTranslator.getInstance();
         dbConnection = Connector.getInstance();
+        this.currentUserID = currentUserID;
+        loadPage(null);
+    }
+
+    /**
+     * Fetches the page of notifications following cursor
+     * @param cursor Last Notification of the previous page, null for the first page
+     */
+    private void loadPage(Notification cursor) {
         try {
-            notificationsIDs = dbConnection.getAllNotifications(currentUserID);
+            notifications = dbConnection.getNotificationsPage(currentUserID, cursor, PAGE_SIZE + 1); // One more tells if there's a next page
         } catch (SQLException e) {
             System.err.println(translation.getTranslation("SQLError"));
             System.exit(1);
         }
+        hasNextPage = notifications.size() > PAGE_SIZE;
+        if (hasNextPage)
+            notifications.remove(PAGE_SIZE);
+    }
+
+    /**
+     * Asks the user whether to show older notifications, if any, and loads them
+     * @return True if a new page has been loaded and has to be printed
+     */
+    public boolean nextPage() {
+        if (!hasNextPage)
+            return false;
+        Character userInput;
+        do {
+            userInput = InputManager.inputChar(translation.getTranslation("nextNotificationsPage"), true);
+            if (userInput == null)
+                continue;
+            userInput = Character.toUpperCase(userInput);
+            if (userInput != 'S' && userInput != 'N') {
+                System.out.println(translation.getTranslation("invalidUserSelection"));
+                userInput = null;
+            }
+        } while (userInput == null);
+        if (userInput == 'N')
+            return false;
+        loadPage(notifications.get(notifications.size() - 1));
+        return true;
     }
 
     @Override
     public void print() {
-        if (notificationsIDs == null) {
+        if (notifications.isEmpty()) {
             System.out.println(translation.getTranslation("noPersonalNotifications"));
             return;
         }
@@ -45,14 +85,8 @@ public class PersonalNotificationView implements PrintableInterface<ArrayList<UU
         String notificationReadSpacer = new String(new char[maxLen - notificationRead.length()]).replace('\0', ' ');
         String notificationUnreadSpacer = new String(new char[maxLen - notificationUnread.length()]).replace('\0', ' ');
 
-        for (int i = 0; i < notificationsIDs.size(); i++) {
-            Notification notification = null;
-            try {
-                notification = dbConnection.getNotification(notificationsIDs.get(i));
-            } catch (SQLException e) {
-                System.err.println(translation.getTranslation("SQLError"));
-                System.exit(1);
-            }
+        for (int i = 0; i < notifications.size(); i++) {
+            Notification notification = notifications.get(i);
             String notificationStatus = notification.isRead() ? notificationRead : notificationUnread;
             String statusSpacer = notification.isRead() ? notificationReadSpacer : notificationUnreadSpacer;
 
@@ -68,7 +102,7 @@ public class PersonalNotificationView implements PrintableInterface<ArrayList<UU
 
     @Override
     public ArrayList<UUID> parseInput() {
-        if (notificationsIDs == null) {
+        if (notifications.isEmpty()) {
             return null;
         }
 
@@ -79,11 +113,11 @@ public class PersonalNotificationView implements PrintableInterface<ArrayList<UU
             return null;
         }
         for (Integer number : userNumbers)
-            if (number - 1 >= notificationsIDs.size() || number - 1 < 0) { // Notifications are printed with 1 based index
+            if (number - 1 >= notifications.size() || number - 1 < 0) { // Notifications are printed with 1 based index
                 System.err.println(translation.getTranslation("invalidUserSelection"));
                 return null; // out of bound
             } else {
-                selectedNotifications.add(notificationsIDs.get(number - 1));
+                selectedNotifications.add(notifications.get(number - 1).getNotificationID());
             }
 
         return selectedNotifications;
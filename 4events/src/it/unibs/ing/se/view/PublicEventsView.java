@@ -1,18 +1,47 @@
 package it.unibs.ing.se.view;
 
+import it.unibs.ing.se.DMO.EventCursor;
+import it.unibs.ing.se.DMO.EventFilter;
+import it.unibs.ing.se.DMO.EventPage;
+import it.unibs.ing.se.DMO.EventSort;
+
 import java.sql.SQLException;
-import java.util.NoSuchElementException;
 
 public class PublicEventsView extends AbstractEventsView {
+    private final static int PAGE_SIZE = 20;
+
+    private EventFilter filter;
+    private EventSort sort;
+
+    public PublicEventsView() {
+        this(new EventFilter(), EventSort.START_DATE);
+    }
+
+    /**
+     * @param filter EventFilter with the conditions listed events have to satisfy
+     * @param sort EventSort with the order of listed events
+     */
+    public PublicEventsView(EventFilter filter, EventSort sort) {
+        this.filter = filter;
+        this.sort = sort;
+    }
+
     @Override
     public void createWorkingSet() {
+        loadPage(null);
+    }
+
+    @Override
+    void loadPage(EventCursor cursor) {
+        EventPage page = null;
         try {
-            eventIDs = dbConnection.getOpenEvents();
+            page = dbConnection.findOpenEvents(filter, sort, cursor, PAGE_SIZE);
         } catch (SQLException e) {
             System.err.println(translation.getTranslation("SQLError"));
             System.exit(1);
-        } catch (NoSuchElementException e) {
-            eventIDs = null;
         }
+        eventIDs = page.getEventIDs();
+        nextCursor = page.getNextCursor();
+        previousCursor = page.getPreviousCursor();
     }
 }
@@ -1,11 +1,12 @@
 package it.unibs.ing.se.view.inputwrappers;
 
+import it.unibs.ing.se.model.AttributeTable;
 import it.unibs.ing.se.model.ReflectionInterface;
 
-import java.lang.reflect.Field;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 
 /**
  * This abstract class and its derived classes are used as data wrappers to pass raw user's input data
@@ -27,7 +28,7 @@ abstract public class EventInput implements ReflectionInterface {
     public  LocalDateTime   endDate;
     public  String          notes;
 
-    private final String[] mandatoryFields = {"participantsMin", "registrationDeadline", "location", "startDate", "cost"};
+    private static final String[] MANDATORY_FIELDS = {"participantsMin", "registrationDeadline", "location", "startDate", "cost"};
 
     EventInput(String eventType) {
         this.eventType = eventType;
@@ -37,29 +38,55 @@ abstract public class EventInput implements ReflectionInterface {
         return eventType;
     }
 
+    /**
+     * A method to get the fields of a class and its fathers
+     * @return a LinkedHashMap with a String as a key and a Class<?> as Value
+     *   - Key is field's name as a String (such as the one returned from getAttributesName)
+     *   - Value is the internal type of the field
+     */
+    public LinkedHashMap<String, Class<?>> getAttributesWithType(){
+        AttributeTable attributeTable = getAttributeTable();
+        LinkedHashMap<String, Class<?>> returnFields = new LinkedHashMap<>();
+        for (int i = 0; i < attributeTable.size(); i++)
+            returnFields.put(attributeTable.get(i).getName(), attributeTable.get(i).getType());
+        return returnFields;
+    }
+
+    /**
+     * A method to get DB-input ready values of all non-null fields of a class and its fathers
+     * @return a LinkedHashMap with a String as a key and an Object as Value
+     *   - Key is field's name as a String (such as the one returned from getAttributesName)
+     *   - Value is an Object with current value of a field
+     */
+    public LinkedHashMap<String, Object> getNonNullAttributesWithValue() {
+        AttributeTable attributeTable = getAttributeTable();
+        LinkedHashMap<String, Object> returnFields = new LinkedHashMap<>();
+        for (int i = 0; i < attributeTable.size(); i++) {
+            Object value = attributeTable.get(i).get(this);
+            if (value != null)
+                returnFields.put(attributeTable.get(i).getName(), value);
+        }
+        return returnFields;
+    }
+
     /**
      * A method to set a field to a given object passed from the caller
      */
     public void setAttribute(String fieldName, Object content) {
-        try {
-            Field field = this.getClass().getSuperclass().getDeclaredField( fieldName ); // Need to get the super class as this is an ancestor of real instance classes
-            field.set(this, content);
-        } catch (NoSuchFieldException e) {
+        AttributeTable.Attribute attribute = getAttributeTable().get(fieldName);
+        if (attribute == null) {
             System.out.println("ALERT: Missing field: " + fieldName);
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            System.out.println("ALERT: Illegal access on field: " + fieldName);
-            e.printStackTrace();
+            return;
         }
+        attribute.set(this, content);
     }
 
     /**
      * A method to check if a field is mandatory or optional
      */
     public boolean isOptional(String fieldName) {
-        for (String field:mandatoryFields)
-            if (fieldName.equals(field)) return false;
-        return true;
+        AttributeTable.Attribute attribute = getAttributeTable().get(fieldName);
+        return attribute == null || attribute.isOptional();
     }
 
     @Override
@@ -78,7 +105,7 @@ abstract public class EventInput implements ReflectionInterface {
                 ", inQuota='" + inQuota + '\'' +
                 ", endDate=" + endDate +
                 ", notes='" + notes + '\'' +
-                ", mandatoryFields=" + Arrays.toString(mandatoryFields) +
+                ", mandatoryFields=" + Arrays.toString(MANDATORY_FIELDS) +
                 '}';
     }
 }
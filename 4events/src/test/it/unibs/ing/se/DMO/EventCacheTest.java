@@ -0,0 +1,104 @@
+package it.unibs.ing.se.DMO;
+
+import it.unibs.ing.se.model.Event;
+import it.unibs.ing.se.model.EventFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCacheTest {
+    private final static long TTL_MILLIS = 60 * 1000;
+
+    private static Event newEvent(String title) {
+        Event event = new EventFactory().createEvent(UUID.randomUUID(), UUID.randomUUID(), "soccer_game");
+        event.setAttribute("title", title);
+        return event;
+    }
+
+    @Test
+    void getReturnsWhatWasPut() {
+        EventCache cache = new EventCache(10, TTL_MILLIS);
+        Event event = newEvent("Titolo Evento");
+        assertNull(cache.get(event.getEventID()));
+
+        cache.put(event, cache.getStamp());
+        assertEquals("Titolo Evento", cache.get(event.getEventID()).getTitle());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * An event read before a write was committed must not be cached, or the write would not be seen until it expires
+     */
+    @Test
+    void putAfterInvalidateIsSuppressed() {
+        EventCache cache = new EventCache(10, TTL_MILLIS);
+        Event event = newEvent("Titolo Evento");
+        long stamp = cache.getStamp(); // Reader starts
+        cache.invalidate(event.getEventID()); // Writer commits a change
+        cache.put(event, stamp); // Reader got the event as it was before the write
+
+        assertNull(cache.get(event.getEventID()));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void putAfterInvalidateAllIsSuppressed() {
+        EventCache cache = new EventCache(10, TTL_MILLIS);
+        Event event = newEvent("Titolo Evento");
+        long stamp = cache.getStamp();
+        cache.invalidateAll(Arrays.asList(UUID.randomUUID(), UUID.randomUUID()));
+        cache.put(event, stamp);
+
+        assertNull(cache.get(event.getEventID()));
+    }
+
+    @Test
+    void expiredEventIsReadAgain() throws InterruptedException {
+        EventCache cache = new EventCache(10, 1);
+        Event event = newEvent("Titolo Evento");
+        cache.put(event, cache.getStamp());
+        Thread.sleep(20);
+
+        assertNull(cache.get(event.getEventID()));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void leastRecentlyUsedEventIsEvicted() {
+        EventCache cache = new EventCache(2, TTL_MILLIS);
+        Event first = newEvent("Primo");
+        Event second = newEvent("Secondo");
+        Event third = newEvent("Terzo");
+        cache.put(first, cache.getStamp());
+        cache.put(second, cache.getStamp());
+        cache.get(first.getEventID()); // second is now the least recently used
+        cache.put(third, cache.getStamp());
+
+        assertNotNull(cache.get(first.getEventID()));
+        assertNull(cache.get(second.getEventID()));
+        assertNotNull(cache.get(third.getEventID()));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void callersCannotChangeCachedEvent() {
+        EventCache cache = new EventCache(10, TTL_MILLIS);
+        Event event = newEvent("Titolo Evento");
+        cache.put(event, cache.getStamp());
+        event.setAttribute("title", "Cambiato dopo put");
+
+        Event cached = cache.get(event.getEventID());
+        assertEquals("Titolo Evento", cached.getTitle());
+        cached.setAttribute("title", "Cambiato dopo get");
+        cached.register(UUID.randomUUID());
+
+        Event again = cache.get(event.getEventID());
+        assertEquals("Titolo Evento", again.getTitle());
+        assertEquals(0, again.registeredUsersCount());
+    }
+}
@@ -0,0 +1,45 @@
+package it.unibs.ing.se.DMO;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.get("a"); // Order of use is now b, c, a
+        cache.put("d", 4); // Drops b
+        cache.put("c", 30); // Order of use is now a, d, c
+        cache.put("e", 5); // Drops a
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(30, (int) cache.get("c"));
+        assertEquals(4, (int) cache.get("d"));
+        assertEquals(5, (int) cache.get("e"));
+    }
+
+    @Test
+    void removeAndClear() {
+        LruCache<String, Integer> cache = new LruCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void rejectsIllegalCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new LruCache<String, Integer>(0));
+    }
+}
@@ -0,0 +1,52 @@
+package it.unibs.ing.se.DMO;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The setup script has to create the schema as the migrations leave it, and say so in schema_version
+ */
+class SetupScriptTest {
+    private final static Path SETUP_SCRIPT = Paths.get("db/four_events_db_setup.sql");
+    private final static Path MIGRATIONS = Paths.get("db/migrations");
+    private final static Pattern MIGRATION_FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private final static Pattern SCHEMA_VERSION_ROW = Pattern.compile(
+            "INSERT INTO public\\.schema_version \\(version, description, checksum\\) VALUES \\((\\d+), '(\\w+)', '([0-9a-f]{32})'\\);");
+
+    @Test
+    void recordsEveryMigration() throws IOException, NoSuchAlgorithmException {
+        TreeMap<Integer, String> migrations = new TreeMap<>(); // Version - description/checksum
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(MIGRATIONS, "*.sql")) {
+            for (Path file : files) {
+                Matcher matcher = MIGRATION_FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches())
+                    migrations.put(Integer.parseInt(matcher.group(1)), matcher.group(2) + "/" + md5(Files.readAllBytes(file)));
+            }
+        }
+
+        TreeMap<Integer, String> recorded = new TreeMap<>();
+        Matcher matcher = SCHEMA_VERSION_ROW.matcher(new String(Files.readAllBytes(SETUP_SCRIPT), "UTF-8"));
+        while (matcher.find())
+            recorded.put(Integer.parseInt(matcher.group(1)), matcher.group(2) + "/" + matcher.group(3));
+
+        assertFalse(migrations.isEmpty());
+        assertEquals(migrations, recorded);
+    }
+
+    private static String md5(byte[] content) throws NoSuchAlgorithmException {
+        return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(content)));
+    }
+}
@@ -0,0 +1,85 @@
+package it.unibs.ing.se.DMO;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Each test plays, step by step, a count read from the database by one thread and a write by another one
+ */
+class UnreadNotificationCountersTest {
+    private final UUID userID = UUID.randomUUID();
+
+    @Test
+    void keepsCountWithoutConcurrentWrites() {
+        UnreadNotificationCounters counters = new UnreadNotificationCounters(10);
+        counters.reconcile(userID, 3, counters.getStamp());
+        assertEquals(3, (int) counters.get(userID));
+
+        counters.beginWrite();
+        counters.add(userID, 1);
+        counters.endWrite();
+        assertEquals(4, (int) counters.get(userID));
+    }
+
+    @Test
+    void dropsCountReadWhileWriteCommits() {
+        UnreadNotificationCounters counters = new UnreadNotificationCounters(10);
+        long stamp = counters.getStamp(); // Reader starts
+        counters.beginWrite(); // Writer inserts a notification and commits
+        counters.reconcile(userID, 4, stamp); // Reader's COUNT already sees it
+        counters.add(userID, 1); // Writer applies its delta after the commit
+        counters.endWrite();
+
+        assertNull(counters.get(userID)); // 5 would count the notification twice
+    }
+
+    @Test
+    void dropsCountReadWhileEarlierWriteIsPending() {
+        UnreadNotificationCounters counters = new UnreadNotificationCounters(10);
+        counters.beginWrite(); // Writer starts before the reader
+        long stamp = counters.getStamp();
+        counters.reconcile(userID, 4, stamp);
+        counters.add(userID, 1);
+        counters.endWrite();
+
+        assertNull(counters.get(userID));
+    }
+
+    @Test
+    void dropsCountReadWhileWriteEnds() {
+        UnreadNotificationCounters counters = new UnreadNotificationCounters(10);
+        counters.reconcile(userID, 3, counters.getStamp());
+        counters.beginWrite();
+        long stamp = counters.getStamp();
+        counters.add(userID, 1); // Applied to the old counter, which is about to be replaced
+        counters.endWrite();
+        counters.reconcile(userID, 3, stamp); // May or may not include the write
+
+        assertNull(counters.get(userID));
+    }
+
+    @Test
+    void keepsCountReadAfterWriteEnded() {
+        UnreadNotificationCounters counters = new UnreadNotificationCounters(10);
+        counters.beginWrite();
+        counters.add(userID, 1);
+        counters.endWrite();
+        counters.reconcile(userID, 4, counters.getStamp());
+
+        assertEquals(4, (int) counters.get(userID));
+    }
+
+    @Test
+    void neverGoesBelowZero() {
+        UnreadNotificationCounters counters = new UnreadNotificationCounters(10);
+        counters.reconcile(userID, 1, counters.getStamp());
+        counters.beginWrite();
+        counters.add(userID, -2);
+        counters.endWrite();
+
+        assertEquals(0, (int) counters.get(userID));
+    }
+}
@@ -0,0 +1,55 @@
+package it.unibs.ing.se.model;
+
+import it.unibs.ing.se.model.fields.OptionalCost;
+import it.unibs.ing.se.model.fields.Sex;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributeTableTest {
+
+    @Test
+    void sameTableForSameClass() {
+        assertSame(AttributeTable.of(SoccerGame.class), new SoccerGame().getAttributeTable());
+    }
+
+    @Test
+    void fatherAttributesFirst() {
+        AttributeTable attributeTable = AttributeTable.of(SoccerGame.class);
+        assertEquals(Event.class, attributeTable.get(0).getDeclaringClass());
+        assertEquals(SoccerGame.class, attributeTable.get(attributeTable.size() - 1).getDeclaringClass());
+        assertEquals(new SoccerGame().getAttributesWithType().keySet().iterator().next(), attributeTable.get(0).getName());
+    }
+
+    @Test
+    void onlyPublicAttributes() {
+        AttributeTable attributeTable = AttributeTable.of(MountainHiking.class);
+        assertNull(attributeTable.get("eventID"));
+        assertNull(attributeTable.get("participantsMax"));
+        assertNull(attributeTable.get("MANDATORY_FIELDS"));
+        assertEquals(OptionalCost.class, attributeTable.get("coach").getType());
+    }
+
+    @Test
+    void mandatoryFlags() {
+        AttributeTable attributeTable = AttributeTable.of(SoccerGame.class);
+        assertFalse(attributeTable.get("gender").isOptional());
+        assertFalse(attributeTable.get("startDate").isOptional()); // Declared mandatory by Event
+        assertTrue(attributeTable.get("notes").isOptional());
+    }
+
+    @Test
+    void getAndSet() {
+        Event event = new SoccerGame(UUID.randomUUID(), UUID.randomUUID());
+        AttributeTable attributeTable = event.getAttributeTable();
+        attributeTable.get("ageMin").set(event, 20);
+        attributeTable.get("gender").set(event, new Sex("F"));
+
+        assertEquals(20, attributeTable.get("ageMin").get(event));
+        assertEquals(Integer.valueOf(20), ((SoccerGame) event).ageMin);
+        assertNull(attributeTable.get("title").get(event));
+        assertThrows(ClassCastException.class, () -> attributeTable.get("ageMax").set(event, "twenty"));
+    }
+}
@@ -120,4 +120,81 @@ class SoccerGameTest {
         event.updateState(LocalDateTime.parse("2020-01-01T00:00:00")); // CLOSED -> ENDED: 1 Day after endDate
         assertEquals(event.getCurrentStateAsString(), "ENDED");
     }
-}
\ No newline at end of file
+
+    /**
+     * if a user withdraws from a CLOSED Event before the registrationDeadline, then it's set as OPEN again
+     */
+    @Test
+    void StateClosedReopensBeforeRegistrationDeadline() {
+        event.setParticipantsMax(11);
+        for (int i = 0; i < 10; i++) // One place left
+            event.register(UUID.randomUUID());
+        event.setCurrentState("CLOSED");
+        Assertions.assertAll(
+                () -> assertTrue(event.updateState(LocalDateTime.parse("2019-12-01T09:00:00"))), // Same date, 1 hour before the registrationDeadline
+                () -> assertEquals(event.getCurrentStateAsString(), "OPEN")
+        );
+    }
+
+    /**
+     * once the registrationDeadline has passed a CLOSED Event stays CLOSED, even if there are free places
+     */
+    @Test
+    void StateClosedStaysClosedAfterRegistrationDeadline() {
+        event.setParticipantsMax(11);
+        for (int i = 0; i < 10; i++) // One place left
+            event.register(UUID.randomUUID());
+        event.setCurrentState("CLOSED");
+        Assertions.assertAll(
+                () -> assertFalse(event.updateState(LocalDateTime.parse("2019-12-01T11:00:00"))), // Same date, 1 hour after the registrationDeadline
+                () -> assertEquals(event.getCurrentStateAsString(), "CLOSED")
+        );
+    }
+
+    /**
+     * Only OPEN and CLOSED Events change state as time goes by
+     */
+    @Test
+    void nextStateChangeDate() {
+        Assertions.assertAll(
+                () -> assertNull(nextStateChangeDateIn("UNKNOWN")),
+                () -> assertNull(nextStateChangeDateIn("VALID")),
+                () -> assertEquals(LocalDateTime.parse("2019-12-01T10:00:00"), nextStateChangeDateIn("OPEN")), // registrationDeadline
+                () -> assertEquals(LocalDateTime.parse("2019-12-31T10:00:00"), nextStateChangeDateIn("CLOSED")), // endDate
+                () -> assertNull(nextStateChangeDateIn("ENDED")),
+                () -> assertNull(nextStateChangeDateIn("FAILED")),
+                () -> assertNull(nextStateChangeDateIn("WITHDRAWN"))
+        );
+    }
+
+    /**
+     * Without an endDate a CLOSED Event ends after its duration, or one day after startDate if that is missing too
+     */
+    @Test
+    void nextStateChangeDateClosedWithoutEndDate() {
+        event.setAttribute("endDate", null);
+        assertEquals(LocalDateTime.parse("2019-12-31T10:00:00"), nextStateChangeDateIn("CLOSED")); // startDate + duration
+        event.setAttribute("duration", null);
+        assertEquals(LocalDateTime.parse("2020-01-01T08:00:00"), nextStateChangeDateIn("CLOSED")); // startDate + 1 day
+    }
+
+    private LocalDateTime nextStateChangeDateIn(String state) {
+        event.setCurrentState(state);
+        return event.getNextStateChangeDate();
+    }
+
+    @Test
+    void copy() {
+        event.register(UUID.randomUUID());
+        Event copy = event.copy();
+        assertTrue(copy instanceof SoccerGame);
+        assertEquals(event.toString(), copy.toString());
+
+        copy.register(UUID.randomUUID());
+        copy.setAttribute("title", "Altro Titolo");
+        copy.setVersion(1);
+        assertEquals(1, event.registeredUsersCount());
+        assertEquals("Titolo Evento", event.getTitle());
+        assertEquals(0, event.getVersion());
+    }
+}